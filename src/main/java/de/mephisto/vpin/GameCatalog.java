@@ -0,0 +1,168 @@
+package de.mephisto.vpin;
+
+import de.mephisto.vpin.util.GameChanges;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.*;
+
+/**
+ * Snapshot of the list of games with lookup maps, so the games can be found by id, file name, display name or ROM
+ * without a database query or a scan of the list.
+ * The catalog is immutable, changes create a new catalog. If several games share a key, the first one of the list wins.
+ */
+class GameCatalog {
+  private final static Comparator<GameInfo> DISPLAY_NAME_ORDER = Comparator.comparing(GameInfo::getGameDisplayName, Comparator.nullsLast(Comparator.naturalOrder()));
+
+  private final List<GameInfo> games;
+  private final long version;
+  private final Map<Integer, Integer> rowHashes;
+
+  private final Map<Integer, GameInfo> byId = new HashMap<>();
+  private final Map<String, GameInfo> byFileName = new HashMap<>();
+  private final Map<String, GameInfo> byName = new HashMap<>();
+  private final Map<String, List<GameInfo>> byRom = new HashMap<>();
+  private final List<GameInfo> emptyRoms = new ArrayList<>();
+
+  GameCatalog(@NonNull List<GameInfo> games) {
+    this(games, -1, Collections.emptyMap());
+  }
+
+  /**
+   * @param version   the data version of the database the games have been read from
+   * @param rowHashes the hashes of the database rows the games have been created from
+   */
+  GameCatalog(@NonNull Collection<GameInfo> games, long version, @NonNull Map<Integer, Integer> rowHashes) {
+    List<GameInfo> sorted = new ArrayList<>(games);
+    sorted.sort(DISPLAY_NAME_ORDER);
+    this.games = Collections.unmodifiableList(sorted);
+    this.version = version;
+    this.rowHashes = Collections.unmodifiableMap(rowHashes);
+
+    for (GameInfo game : this.games) {
+      byId.putIfAbsent(game.getId(), game);
+      if (game.getGameFile() != null) {
+        byFileName.putIfAbsent(game.getGameFile().getName(), game);
+      }
+      if (game.getGameDisplayName() != null) {
+        byName.putIfAbsent(toNameKey(game.getGameDisplayName()), game);
+      }
+
+      if (StringUtils.isEmpty(game.getRom())) {
+        emptyRoms.add(game);
+      }
+      else {
+        byRom.computeIfAbsent(game.getRom(), k -> new ArrayList<>()).add(game);
+      }
+    }
+  }
+
+  /**
+   * All games, sorted by their display name.
+   */
+  @NonNull
+  List<GameInfo> getGames() {
+    return games;
+  }
+
+  long getVersion() {
+    return version;
+  }
+
+  @NonNull
+  Map<Integer, Integer> getRowHashes() {
+    return rowHashes;
+  }
+
+  @Nullable
+  GameInfo getGame(int id) {
+    return byId.get(id);
+  }
+
+  /**
+   * @param fileName the name of the VPX file without any folder
+   */
+  @Nullable
+  GameInfo getGameByFileName(@NonNull String fileName) {
+    return byFileName.get(fileName);
+  }
+
+  /**
+   * The display name is matched case-insensitive.
+   */
+  @Nullable
+  GameInfo getGameByName(@NonNull String name) {
+    return byName.get(toNameKey(name));
+  }
+
+  @NonNull
+  List<GameInfo> getGamesByRom(@NonNull String rom) {
+    return Collections.unmodifiableList(byRom.getOrDefault(rom, Collections.emptyList()));
+  }
+
+  @NonNull
+  List<GameInfo> getGamesWithEmptyRoms() {
+    return Collections.unmodifiableList(emptyRoms);
+  }
+
+  /**
+   * Returns the catalog with the added, changed and removed games of the given changes.
+   */
+  @NonNull
+  GameCatalog apply(@NonNull GameChanges changes, long version) {
+    Map<Integer, GameInfo> next = toIdMap();
+    for (Integer id : changes.getRemoved()) {
+      next.remove(id);
+    }
+    for (GameInfo game : changes.getUpdated()) {
+      next.put(game.getId(), game);
+    }
+    return new GameCatalog(next.values(), version, changes.getRowHashes());
+  }
+
+  /**
+   * Returns the catalog with the given game added or replaced.
+   */
+  @NonNull
+  GameCatalog withGame(@NonNull GameInfo game) {
+    Map<Integer, GameInfo> next = toIdMap();
+    next.put(game.getId(), game);
+    return new GameCatalog(next.values(), version, rowHashes);
+  }
+
+  /**
+   * Returns the catalog with the given games replaced, games that are no longer part of the catalog are not added again.
+   */
+  @NonNull
+  GameCatalog withGames(@NonNull List<GameInfo> updated) {
+    Map<Integer, GameInfo> next = toIdMap();
+    for (GameInfo game : updated) {
+      next.replace(game.getId(), game);
+    }
+    return new GameCatalog(next.values(), version, rowHashes);
+  }
+
+  /**
+   * Returns the catalog without the games of the given VPX file.
+   */
+  @NonNull
+  GameCatalog withoutGameFile(@NonNull String gameFileName) {
+    List<GameInfo> next = new ArrayList<>(games);
+    next.removeIf(g -> gameFileName.equals(g.getGameFileName()));
+    return new GameCatalog(next, version, rowHashes);
+  }
+
+
+  private Map<Integer, GameInfo> toIdMap() {
+    Map<Integer, GameInfo> result = new LinkedHashMap<>();
+    for (GameInfo game : games) {
+      result.put(game.getId(), game);
+    }
+    return result;
+  }
+
+  private static String toNameKey(@NonNull String name) {
+    return name.trim().toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,190 @@
+package de.mephisto.vpin;
+
+import de.mephisto.vpin.util.GameChanges;
+import de.mephisto.vpin.util.SqliteConnector;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Publishes the {@link GameCatalog} as immutable snapshots, so readers never block and never see a half-built list.
+ * The next snapshot is built in the background after the PinUP Popper database has changed,
+ * readers keep using the current one in the meantime.
+ */
+class GameCatalogManager {
+  private final static Logger LOG = LoggerFactory.getLogger(GameCatalogManager.class);
+
+  /**
+   * The database is checked for changes at most once in this interval, lookups are often made in loops.
+   */
+  private final static long CHECK_INTERVAL_MS = 1000;
+
+  private final VPinService service;
+  private final SqliteConnector connector;
+
+  private final AtomicReference<GameCatalog> catalog = new AtomicReference<>();
+  private final ExecutorService refreshExecutor;
+  private volatile Thread refreshThread;
+  private volatile long lastCheck;
+
+  private final Object lock = new Object();
+  private Refresh pendingRefresh;
+
+  GameCatalogManager(@NonNull VPinService service, @NonNull SqliteConnector connector) {
+    this.service = service;
+    this.connector = connector;
+    this.refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "Game Catalog Refresh");
+      t.setDaemon(true);
+      refreshThread = t;
+      return t;
+    });
+  }
+
+  /**
+   * Returns the current catalog and triggers a background refresh if the check interval has passed.
+   * Only the very first call waits for the catalog to be loaded.
+   */
+  @NonNull
+  GameCatalog get() {
+    GameCatalog current = catalog.get();
+    if (current == null) {
+      return awaitFresh();
+    }
+
+    long now = System.currentTimeMillis();
+    if (now - lastCheck >= CHECK_INTERVAL_MS) {
+      lastCheck = now;
+      refresh(false);
+    }
+    return current;
+  }
+
+  /**
+   * Checks the database for changes and waits until they are part of the returned catalog.
+   */
+  @NonNull
+  GameCatalog awaitFresh() {
+    if (Thread.currentThread() != refreshThread) {
+      try {
+        return refresh(false).get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOG.warn("Interrupted while waiting for the game catalog.");
+      } catch (ExecutionException e) {
+        LOG.error("Failed to refresh game catalog: " + e.getMessage(), e);
+      }
+    }
+
+    GameCatalog current = catalog.get();
+    return current != null ? current : new GameCatalog(Collections.emptyList());
+  }
+
+  /**
+   * Schedules a refresh of the catalog, a refresh that has been scheduled but not started yet is reused.
+   *
+   * @param full if true, all games are created again instead of only the changed ones
+   */
+  @NonNull
+  CompletableFuture<GameCatalog> refresh(boolean full) {
+    synchronized (lock) {
+      if (pendingRefresh != null && !pendingRefresh.started && (pendingRefresh.full || !full)) {
+        return pendingRefresh.future;
+      }
+
+      Refresh refresh = new Refresh(full);
+      pendingRefresh = refresh;
+      try {
+        refreshExecutor.execute(() -> run(refresh));
+      } catch (RejectedExecutionException e) {
+        refresh.future.completeExceptionally(e);
+      }
+      return refresh.future;
+    }
+  }
+
+  /**
+   * Publishes a changed copy of the current catalog, nothing happens if the catalog has not been loaded yet.
+   */
+  void update(@NonNull UnaryOperator<GameCatalog> change) {
+    synchronized (lock) {
+      GameCatalog current = catalog.get();
+      if (current != null) {
+        catalog.set(change.apply(current));
+      }
+    }
+  }
+
+  void close() {
+    refreshExecutor.shutdownNow();
+  }
+
+  private void run(@NonNull Refresh refresh) {
+    refresh.started = true;
+    try {
+      refresh.future.complete(build(refresh.full));
+    } catch (Exception e) {
+      LOG.error("Failed to refresh game catalog: " + e.getMessage(), e);
+      refresh.future.completeExceptionally(e);
+    }
+  }
+
+  @NonNull
+  private GameCatalog build(boolean full) {
+    GameCatalog base = catalog.get();
+    long version = connector.getDataVersion();
+    if (!full && base != null && base.getVersion() == version) {
+      return base;
+    }
+
+    long start = System.currentTimeMillis();
+    boolean reload = full || base == null;
+    if (reload) {
+      LOG.info("Starting Game Scan...");
+    }
+    GameChanges changes = connector.getGameChanges(service, reload ? Collections.emptyMap() : base.getRowHashes(), version);
+    if (changes == null) {
+      //the database may be locked by PinUP Popper, the version is not stored, so the next check tries again
+      if (base != null && !full) {
+        return base;
+      }
+      throw new IllegalStateException("Failed to read the games of the PinUP Popper database.");
+    }
+
+    GameCatalog next;
+    synchronized (lock) {
+      //single games may have been updated in the meantime, so the changes are applied to the latest catalog
+      GameCatalog latest = catalog.get();
+      if (reload || latest == null) {
+        next = new GameCatalog(changes.getUpdated(), version, changes.getRowHashes());
+      }
+      else {
+        next = latest.apply(changes, version);
+      }
+      catalog.set(next);
+    }
+
+    if (reload) {
+      LOG.info("Loading of all GameInfo finished, loaded " + next.getGames().size() + " games in " + (System.currentTimeMillis() - start) + "ms.");
+    }
+    else if (!changes.isEmpty()) {
+      LOG.info("Updated game list, " + changes.getUpdated().size() + " games added or changed, " + changes.getRemoved().size() + " removed.");
+    }
+    return next;
+  }
+
+  private static class Refresh {
+    private final boolean full;
+    private final CompletableFuture<GameCatalog> future = new CompletableFuture<>();
+    private volatile boolean started;
+
+    private Refresh(boolean full) {
+      this.full = full;
+    }
+  }
+}
@@ -11,7 +11,9 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 public class GameInfo {
 
@@ -36,6 +38,7 @@ public class GameInfo {
     this.service = service;
   }
 
+
   public Highscore resolveHighscore() {
     return this.service.getHighscore(this);
   }
@@ -106,6 +109,27 @@ public class GameInfo {
     service.rescanRom(this);
   }
 
+  /**
+   * Returns a copy of this game, scans work on copies since the games of the game list are shared.
+   */
+  @NonNull
+  public GameInfo copy() {
+    GameInfo game = new GameInfo(service);
+    game.rom = rom;
+    game.originalRom = originalRom;
+    game.gameDisplayName = gameDisplayName;
+    game.gameFileName = gameFileName;
+    game.hsFileName = hsFileName;
+    game.id = id;
+    game.gameFile = gameFile;
+    game.romFile = romFile;
+    game.wheelIconFile = wheelIconFile;
+    game.lastPlayed = lastPlayed;
+    game.numberPlays = numberPlays;
+    game.nvOffset = nvOffset;
+    return game;
+  }
+
   @SuppressWarnings("unused")
   @Nullable
   public Date getLastPlayed() {
@@ -154,11 +178,33 @@ public class GameInfo {
     this.wheelIconFile = wheelIconFile;
   }
 
+  /**
+   * Returns the ROM names sharing the nvram with the ROM of this game, the original ROM name comes first.
+   */
+  @NonNull
+  public List<String> getRomFamily() {
+    if (StringUtils.isEmpty(this.getRom())) {
+      return Collections.emptyList();
+    }
+    return service.getRomFamily(this.getRom());
+  }
+
+  /**
+   * Returns the nvram file of the ROM family, the file of the original ROM is preferred.
+   */
   @Nullable
   public File getNvRamFile() {
     File nvRamFolder = new File(SystemInfo.getInstance().getMameFolder(), "nvram");
 
-    String originalRom = getOriginalRom() != null ? this.getOriginalRom() : this.getRom();
+    List<String> family = getRomFamily();
+    for (String rom : family) {
+      File nvRam = new File(nvRamFolder, rom + ".nv");
+      if (nvRam.exists()) {
+        return nvRam;
+      }
+    }
+
+    String originalRom = !family.isEmpty() ? family.get(0) : this.getRom();
     return new File(nvRamFolder, originalRom +  ".nv");
   }
 
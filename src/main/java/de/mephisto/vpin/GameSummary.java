@@ -0,0 +1,64 @@
+package de.mephisto.vpin;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * The columns of a PinUP Popper game that are needed to list it.
+ * Unlike {@link GameInfo}, no files are checked and no ROM data is resolved to create a summary,
+ * the full game is loaded on demand with {@link VPinService#getGameInfo(GameSummary)}.
+ */
+public class GameSummary {
+  private final int id;
+  private final String gameFileName;
+  private final String gameDisplayName;
+
+  public GameSummary(int id, String gameFileName, String gameDisplayName) {
+    this.id = id;
+    this.gameFileName = gameFileName;
+    this.gameDisplayName = gameDisplayName;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * The file name as stored by PinUP Popper, relative to the tables folder.
+   */
+  public String getGameFileName() {
+    return gameFileName;
+  }
+
+  /**
+   * The name of the VPX file without any folder.
+   */
+  @NonNull
+  public String getVpxFileName() {
+    return FilenameUtils.getName(String.valueOf(gameFileName));
+  }
+
+  public String getGameDisplayName() {
+    return gameDisplayName;
+  }
+
+  @Override
+  public String toString() {
+    return this.getGameDisplayName();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+
+    GameSummary summary = (GameSummary) o;
+
+    return id == summary.id;
+  }
+
+  @Override
+  public int hashCode() {
+    return id;
+  }
+}
@@ -0,0 +1,82 @@
+package de.mephisto.vpin;
+
+import de.mephisto.vpin.util.StartupProfiler;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the init tasks of the {@link VPinService} concurrently.
+ * Each task starts as soon as the tasks it depends on have finished, tasks depending on a failed task are skipped.
+ * The tasks must be added after their dependencies, so the graph can't contain cycles.
+ * Each task is recorded as startup phase nested into the phase that was open when the bootstrap was created.
+ */
+class ServiceBootstrap {
+  private final static Logger LOG = LoggerFactory.getLogger(ServiceBootstrap.class);
+
+  private final Map<String, CompletableFuture<Void>> tasks = new LinkedHashMap<>();
+  private final ExecutorService executor;
+  private final long start = System.currentTimeMillis();
+  private final StartupProfiler.Phase parentPhase = StartupProfiler.getInstance().getCurrentPhase();
+
+  ServiceBootstrap() {
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "VPinService Init " + threadCount.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * @param dependencies the names of the tasks that must be finished before this task is started
+   */
+  void add(@NonNull String name, @NonNull InitTask task, @NonNull String... dependencies) {
+    CompletableFuture<?>[] required = new CompletableFuture<?>[dependencies.length];
+    for (int i = 0; i < dependencies.length; i++) {
+      required[i] = tasks.get(dependencies[i]);
+      if (required[i] == null) {
+        throw new IllegalArgumentException("Init task '" + name + "' depends on unknown task '" + dependencies[i] + "'");
+      }
+    }
+    tasks.put(name, CompletableFuture.allOf(required).thenRunAsync(() -> run(name, task), executor));
+  }
+
+  /**
+   * Waits until all tasks have finished and rethrows the first failure.
+   */
+  void await() throws VPinServiceException {
+    try {
+      CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0])).join();
+      LOG.info("Finished " + tasks.size() + " init tasks in " + (System.currentTimeMillis() - start) + "ms");
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof VPinServiceException) {
+        throw (VPinServiceException) cause;
+      }
+      throw new VPinServiceException(cause instanceof Exception ? (Exception) cause : e);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private void run(@NonNull String name, @NonNull InitTask task) {
+    long taskStart = System.currentTimeMillis();
+    try {
+      StartupProfiler.getInstance().run(name, parentPhase, task::run);
+      LOG.info("Init task '" + name + "' finished in " + (System.currentTimeMillis() - taskStart) + "ms");
+    } catch (Exception e) {
+      LOG.error("Init task '" + name + "' failed after " + (System.currentTimeMillis() - taskStart) + "ms: " + e.getMessage(), e);
+      throw new CompletionException(e);
+    }
+  }
+
+  interface InitTask {
+    void run() throws Exception;
+  }
+}
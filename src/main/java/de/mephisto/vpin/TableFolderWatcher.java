@@ -0,0 +1,138 @@
+package de.mephisto.vpin;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the VPX tables folder and the directb2s folder.
+ * Events are debounced per file, so copying a large table results in a single update once the file is written.
+ */
+class TableFolderWatcher {
+  private final static Logger LOG = LoggerFactory.getLogger(TableFolderWatcher.class);
+
+  private final static long DEBOUNCE_MS = 2000;
+
+  private final VPinService service;
+  private final File tablesFolder;
+  private final File directB2SFolder;
+
+  private final Map<Path, ScheduledFuture<?>> pending = new HashMap<>();
+  private ScheduledExecutorService scheduler;
+  private WatchService watchService;
+  private Thread thread;
+
+  TableFolderWatcher(@NonNull VPinService service, @NonNull File tablesFolder, @NonNull File directB2SFolder) {
+    this.service = service;
+    this.tablesFolder = tablesFolder;
+    this.directB2SFolder = directB2SFolder;
+  }
+
+  void start() {
+    try {
+      watchService = FileSystems.getDefault().newWatchService();
+      register(tablesFolder);
+      if (!directB2SFolder.getAbsoluteFile().equals(tablesFolder.getAbsoluteFile())) {
+        register(directB2SFolder);
+      }
+    } catch (IOException e) {
+      LOG.error("Failed to start table folder watcher: " + e.getMessage(), e);
+      return;
+    }
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "Table Folder Update");
+      t.setDaemon(true);
+      return t;
+    });
+
+    thread = new Thread(this::run, "Table Folder Watcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  void stop() {
+    try {
+      if (watchService != null) {
+        watchService.close();
+      }
+    } catch (IOException e) {
+      LOG.error("Failed to close table folder watcher: " + e.getMessage());
+    }
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  private void register(File folder) throws IOException {
+    if (!folder.exists()) {
+      LOG.warn("Skipped watching " + folder.getAbsolutePath() + ", folder does not exist.");
+      return;
+    }
+    folder.toPath().register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+    LOG.info("Watching " + folder.getAbsolutePath() + " for table changes.");
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        Path folder = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == OVERFLOW) {
+            LOG.info("Too many changes in " + folder + ", refreshing all games.");
+            scheduler.execute(service::refreshGameInfos);
+            continue;
+          }
+
+          Path file = folder.resolve((Path) event.context());
+          String name = file.getFileName().toString().toLowerCase();
+          if (name.endsWith(".vpx") || name.endsWith(".directb2s")) {
+            schedule(file);
+          }
+        }
+        key.reset();
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      LOG.info("Stopped table folder watcher.");
+    }
+  }
+
+  private synchronized void schedule(Path path) {
+    ScheduledFuture<?> future = pending.get(path);
+    if (future != null) {
+      future.cancel(false);
+    }
+    pending.put(path, scheduler.schedule(() -> dispatch(path), DEBOUNCE_MS, TimeUnit.MILLISECONDS));
+  }
+
+  private void dispatch(Path path) {
+    synchronized (this) {
+      pending.remove(path);
+    }
+
+    File file = path.toFile();
+    try {
+      if (file.getName().toLowerCase().endsWith(".vpx")) {
+        service.tableFileChanged(file);
+      }
+      else {
+        service.directB2SFileChanged(file);
+      }
+    } catch (Exception e) {
+      LOG.error("Failed to update game for " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+    }
+  }
+}
@@ -9,25 +9,32 @@ import de.mephisto.vpin.dof.Unit;
 import de.mephisto.vpin.highscores.Highscore;
 import de.mephisto.vpin.highscores.HighscoreManager;
 import de.mephisto.vpin.http.HttpServer;
+import de.mephisto.vpin.popper.Playlist;
+import de.mephisto.vpin.popper.Playlists;
 import de.mephisto.vpin.popper.PopperLaunchListener;
 import de.mephisto.vpin.popper.PopperManager;
 import de.mephisto.vpin.popper.PopperScreen;
 import de.mephisto.vpin.popper.TableStatusChangeListener;
 import de.mephisto.vpin.roms.RomManager;
+import de.mephisto.vpin.roms.RomScanJob;
+import de.mephisto.vpin.roms.RomScanListener;
+import de.mephisto.vpin.util.Lazy;
 import de.mephisto.vpin.util.SqliteConnector;
+import de.mephisto.vpin.util.StartupProfiler;
 import de.mephisto.vpin.util.SystemInfo;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
-import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class VPinService {
@@ -46,15 +53,17 @@ public class VPinService {
 
   private HttpServer httpServer;
 
-  private DOFManager dofManager;
+  private Lazy<DOFManager> dofManager;
 
-  private PopperManager popperManager;
+  private Lazy<PopperManager> popperManager;
 
   private DOFCommandData dofCommandData;
 
   private DirectB2SManager directB2SManager;
 
-  private List<GameInfo> gameInfos = new ArrayList<>();
+  private TableFolderWatcher tableFolderWatcher;
+
+  private GameCatalogManager catalogManager;
   private boolean headless;
 
   public static VPinService create(boolean headless) throws VPinServiceException {
@@ -69,7 +78,10 @@ public class VPinService {
   }
 
   private void init(boolean headless) throws VPinServiceException {
-    this.headless =headless;
+    this.headless = headless;
+    CompletableFuture<VPinService> ready = new CompletableFuture<>();
+    StartupProfiler profiler = StartupProfiler.getInstance();
+    StartupProfiler.Phase phase = profiler.start("VPinService init");
     try {
       if (!SystemInfo.getInstance().getPinUPSystemFolder().exists()) {
         throw new FileNotFoundException("Wrong PinUP Popper installation folder: " + SystemInfo.getInstance().getPinUPSystemFolder().getAbsolutePath() + ".\nPlease fix the PinUP Popper installation path in file ./resources/env.properties");
@@ -78,34 +90,63 @@ public class VPinService {
         throw new FileNotFoundException("Wrong Visual Pinball installation folder: " + SystemInfo.getInstance().getVisualPinballInstallationFolder().getAbsolutePath() + ".\nPlease fix the Visual Pinball installation path in file ./resources/env.properties");
       }
 
-      this.romManager = new RomManager();
-      this.sqliteConnector = new SqliteConnector(romManager);
-      this.highscoreManager = new HighscoreManager();
-      this.directB2SManager = new DirectB2SManager();
-      this.popperManager = new PopperManager(sqliteConnector, highscoreManager);
-
-      dofCommandData = DOFCommandData.create();
-      this.dofManager = new DOFManager(dofCommandData);
-
       if (headless) {
         if (!SystemInfo.isAvailable(HttpServer.PORT)) {
           LOG.warn("VPinService already running, exiting.");
           System.exit(0);
         }
 
-        this.httpServer = new HttpServer(popperManager);
-        this.dofManager.startRuleEngine();
+        //PinUP Popper may already be launching tables, the requests wait until the service is ready
+        profiler.run("http server", () -> this.httpServer = new HttpServer(ready));
       }
 
+      //the expensive managers are created on first use, config sessions usually only need some of them
+      this.highscoreManager = new HighscoreManager();
+      this.directB2SManager = new DirectB2SManager();
+      this.dofManager = new Lazy<>("DOF manager", () -> new DOFManager(dofCommandData));
+      this.popperManager = new Lazy<>("Popper manager", () -> new PopperManager(sqliteConnector, highscoreManager));
+
+      ServiceBootstrap bootstrap = new ServiceBootstrap();
+      bootstrap.add("roms", () -> this.romManager = new RomManager());
+      bootstrap.add("database", () -> {
+        this.sqliteConnector = new SqliteConnector(romManager);
+        this.catalogManager = new GameCatalogManager(this, sqliteConnector);
+      }, "roms");
+      bootstrap.add("dof", () -> this.dofCommandData = DOFCommandData.create());
+      bootstrap.add("catalog", () -> {
+        //the games are loaded in the background, the first lookup only waits for the rest of the loading
+        this.catalogManager.refresh(false);
+        this.tableFolderWatcher = new TableFolderWatcher(this, SystemInfo.getInstance().getVPXTablesFolder(), SystemInfo.getInstance().getDirectB2SFolder());
+        this.tableFolderWatcher.start();
+      }, "database");
       if (headless) {
-        LOG.info("VPinService created [headless-mode]");
-      }
-      else {
-        LOG.info("VPinService created [config-mode]");
+        //the service must receive the PinUP Popper notifications and run the startup rules right away
+        bootstrap.add("popper", () -> this.popperManager.get(), "database");
+        bootstrap.add("dof rules", () -> this.dofManager.get().startRuleEngine(), "dof");
+        //the waiting requests only need the games and PinUP Popper, not the DOF setup
+        bootstrap.add("http ready", () -> ready.complete(this), "popper", "catalog");
       }
+      bootstrap.await();
+      ready.complete(this);
     } catch (Exception e) {
       LOG.error("VPin Service failed to start: " + e.getMessage(), e);
-      throw new VPinServiceException(e);
+      ready.completeExceptionally(e);
+      if (httpServer != null) {
+        //the port would stay bound otherwise
+        httpServer.stop();
+        httpServer = null;
+      }
+      throw e instanceof VPinServiceException ? (VPinServiceException) e : new VPinServiceException(e);
+    } finally {
+      phase.close();
+    }
+
+    LOG.info("Boot timeline:\n" + profiler.getTimeline());
+    if (headless) {
+      LOG.info("VPinService created [headless-mode]");
+    }
+    else {
+      LOG.info("VPinService created [config-mode]");
     }
   }
 
@@ -115,14 +156,36 @@ public class VPinService {
 
   public void restart() throws VPinServiceException {
     this.shutdown();
+    StartupProfiler.getInstance().reset();
     this.init(true);
   }
 
   @SuppressWarnings("unused")
   public void shutdown() {
-    gameInfos.clear();
+    this.catalogManager.close();
+    this.tableFolderWatcher.stop();
     this.executor.shutdown();
     this.httpServer.stop();
+    this.sqliteConnector.close();
+    this.romManager.close();
+  }
+
+  /**
+   * Returns the recorded startup phases, from the initialization of the {@link SystemInfo} until the service is ready.
+   */
+  @SuppressWarnings("unused")
+  @NonNull
+  public List<StartupProfiler.Phase> getBootTimeline() {
+    return StartupProfiler.getInstance().getPhases();
+  }
+
+  /**
+   * Returns the startup phases as printable table, see {@link #getBootTimeline()}.
+   */
+  @SuppressWarnings("unused")
+  @NonNull
+  public String getBootTimelineReport() {
+    return StartupProfiler.getInstance().getTimeline();
   }
 
   @SuppressWarnings("unused")
@@ -141,27 +204,67 @@ public class VPinService {
   @SuppressWarnings("unused")
   @NonNull
   public String validateScreenConfiguration(@NonNull PopperScreen screen) {
-    return popperManager.validateScreenConfiguration(screen);
+    return popperManager.get().validateScreenConfiguration(screen);
+  }
+
+  /**
+   * Invoked by the HTTP server when PinUP Popper has launched or exited a table.
+   */
+  public void notifyTableStatusChange(@NonNull GameInfo game, boolean started) {
+    this.popperManager.get().notifyTableStatusChange(game, started);
+  }
+
+  /**
+   * Invoked by the HTTP server when PinUP Popper has been launched.
+   */
+  public void notifyPopperLaunch() {
+    this.popperManager.get().notifyPopperLaunch();
   }
 
   @SuppressWarnings("unused")
   public void addPopperLaunchListener(@NonNull PopperLaunchListener listener) {
-    this.popperManager.addPopperLaunchListener(listener);
+    this.popperManager.get().addPopperLaunchListener(listener);
   }
 
   @SuppressWarnings("unused")
   public void addTableStatusChangeListener(@NonNull TableStatusChangeListener listener) {
-    this.popperManager.addTableStatusChangeListener(listener);
+    this.popperManager.get().addTableStatusChangeListener(listener);
   }
 
   @SuppressWarnings("unused")
   public void removeTableStatusChangeListener(@NonNull TableStatusChangeListener listener) {
-    this.popperManager.removeTableStatusChangeListener(listener);
+    if (this.popperManager.isCreated()) {
+      this.popperManager.get().removeTableStatusChangeListener(listener);
+    }
   }
 
   @SuppressWarnings("unused")
   public GameInfo getGameInfo(int id) {
-    return sqliteConnector.getGame(this, id);
+    return findGame(catalog -> catalog.getGame(id));
+  }
+
+  @SuppressWarnings("unused")
+  @NonNull
+  public CompletableFuture<GameInfo> getGameInfoAsync(int id) {
+    return sqliteConnector.supplyAsync(() -> getGameInfo(id));
+  }
+
+  /**
+   * Loads the full game of the given summary.
+   */
+  @Nullable
+  public GameInfo getGameInfo(@NonNull GameSummary summary) {
+    return sqliteConnector.getGame(this, summary.getId());
+  }
+
+  /**
+   * Returns the summaries of all games, sorted by their display name.
+   * This is a single narrow query, use it for lists that do not need the ROM and file data of {@link GameInfo}.
+   */
+  @SuppressWarnings("unused")
+  @NonNull
+  public List<GameSummary> getGameSummaries() {
+    return sqliteConnector.getGameSummaries();
   }
 
   @SuppressWarnings("unused")
@@ -188,75 +291,194 @@ public class VPinService {
   @SuppressWarnings("unused")
   @NonNull
   public List<Unit> getUnits() {
-    return dofManager.getUnits();
+    return dofManager.get().getUnits();
   }
 
   @SuppressWarnings("unused")
   public Unit getUnit(int id) {
-    return dofManager.getUnit(id);
+    return dofManager.get().getUnit(id);
   }
 
+  /**
+   * Returns the games that are part of at least one playlist.
+   */
   @SuppressWarnings("unused")
   public List<GameInfo> getActiveGameInfos() {
-    List<Integer> gameIdsFromPlaylists = this.sqliteConnector.getGameIdsFromPlaylists();
-    List<GameInfo> games = sqliteConnector.getGames(this);
-    return games.stream().filter(g -> gameIdsFromPlaylists.contains(g.getId())).collect(Collectors.toList());
+    Playlists playlists = this.sqliteConnector.getPlaylists();
+    return getGameInfos().stream().filter(g -> playlists.contains(g.getId())).collect(Collectors.toList());
   }
 
-  public List<GameInfo> getGameInfos() {
-    if (this.gameInfos.isEmpty()) {
-      LOG.info("Starting Game Scan...");
-      this.gameInfos.addAll(sqliteConnector.getGames(this));
-      LOG.info("Loading of all GameInfo finished, loaded " + this.gameInfos.size() + " games.");
+  @SuppressWarnings("unused")
+  @NonNull
+  public List<Playlist> getPlaylists() {
+    return this.sqliteConnector.getPlaylists().getPlaylists();
+  }
+
+  /**
+   * Returns the games of the given playlist in playlist order.
+   */
+  @SuppressWarnings("unused")
+  @NonNull
+  public List<GameInfo> getPlaylistGameInfos(int playlistId) {
+    Playlist playlist = this.sqliteConnector.getPlaylists().getPlaylist(playlistId);
+    if (playlist == null) {
+      return Collections.emptyList();
     }
-    return this.gameInfos;
+
+    //the playlist is read from the database, so the games must be up-to-date as well
+    GameCatalog games = catalogManager.awaitFresh();
+    List<GameInfo> result = new ArrayList<>(playlist.getGameIds().size());
+    for (Integer gameId : playlist.getGameIds()) {
+      GameInfo game = games.getGame(gameId);
+      if (game != null) {
+        result.add(game);
+      }
+    }
+    return result;
   }
 
+  /**
+   * Returns all games sorted by their display name, the returned list is an immutable snapshot.
+   * The games are updated in the background when the PinUP Popper database has changed,
+   * only the games whose rows have changed are created again.
+   */
+  @NonNull
+  public List<GameInfo> getGameInfos() {
+    return getCatalog().getGames();
+  }
+
+  /**
+   * Like {@link #getGameInfos()}, but waits until all changes of the PinUP Popper database have been applied.
+   */
+  @SuppressWarnings("unused")
+  @NonNull
+  public List<GameInfo> awaitFreshGameInfos() {
+    return catalogManager.awaitFresh().getGames();
+  }
+
+  /**
+   * Creates all games again in the background, the current games are returned until the reload is finished.
+   */
   @SuppressWarnings("unused")
   public void refreshGameInfos() {
-    this.gameInfos.clear();
-    LOG.info("Resetted game info list.");
+    catalogManager.refresh(true);
+    LOG.info("Scheduled reload of game info list.");
+  }
+
+  @NonNull
+  private GameCatalog getCatalog() {
+    return catalogManager.get();
+  }
+
+  /**
+   * Looks the game up in the current catalog. If it is not found, the game may have been added to PinUP Popper
+   * since the last refresh, so the lookup is repeated after all changes of the database have been applied.
+   */
+  @Nullable
+  private GameInfo findGame(@NonNull Function<GameCatalog, GameInfo> lookup) {
+    GameInfo game = lookup.apply(getCatalog());
+    if (game == null) {
+      game = lookup.apply(catalogManager.awaitFresh());
+    }
+    return game;
+  }
+
+  /**
+   * Invoked by the {@link TableFolderWatcher} when a VPX file has been created, modified or deleted.
+   * The table is rescanned and only its entry of the game list is updated.
+   */
+  void tableFileChanged(@NonNull File file) {
+    if (!file.exists()) {
+      catalogManager.update(catalog -> catalog.withoutGameFile(file.getName()));
+      LOG.info("Removed game for deleted table " + file.getAbsolutePath());
+      return;
+    }
+
+    GameInfo game = sqliteConnector.getGameByFilename(this, file.getName());
+    if (game == null) {
+      LOG.info("No game found for changed table " + file.getAbsolutePath() + ", it has not been imported into PinUP Popper yet.");
+      return;
+    }
+
+    if (!romManager.isScanUpToDate(game)) {
+      romManager.scanRom(game);
+    }
+    updateGameInfo(game);
+  }
+
+  /**
+   * Invoked by the {@link TableFolderWatcher} when a directb2s file has been created, modified or deleted.
+   * The extracted background image of the table is outdated then.
+   */
+  void directB2SFileChanged(@NonNull File file) {
+    String baseName = FilenameUtils.getBaseName(file.getName());
+    GameInfo game = sqliteConnector.getGameByFilename(this, baseName + ".vpx");
+    if (game == null) {
+      return;
+    }
+
+    File image = game.getDirectB2SImage();
+    if (image.exists() && image.delete()) {
+      LOG.info("Deleted outdated directb2s image " + image.getAbsolutePath());
+    }
+    updateGameInfo(game);
+  }
+
+  private void updateGameInfo(@NonNull GameInfo game) {
+    catalogManager.update(catalog -> catalog.withGame(game));
+    LOG.info("Updated game " + game);
+  }
+
+  /**
+   * Returns the ROM names sharing the nvram and highscores with the given ROM, the original ROM name comes first.
+   */
+  @NonNull
+  public List<String> getRomFamily(@NonNull String rom) {
+    return this.romManager.getAliasIndex().getFamily(rom);
   }
 
   @SuppressWarnings("unused")
   @Nullable
   public String rescanRom(GameInfo gameInfo) {
-    return this.romManager.scanRom(gameInfo);
+    GameInfo scanned = gameInfo.copy();
+    String rom = this.romManager.scanRom(scanned);
+    catalogManager.update(catalog -> catalog.withGame(scanned));
+    return rom;
+  }
+
+  /**
+   * Rescans the ROMs of all games in the background.
+   */
+  @SuppressWarnings("unused")
+  @NonNull
+  public RomScanJob rescanRoms(@Nullable RomScanListener listener) {
+    return this.romManager.scanRoms(getGameInfos(), true, new CatalogScanListener(listener));
+  }
+
+  /**
+   * Rescans the ROMs of all games without a ROM name in the background.
+   */
+  @SuppressWarnings("unused")
+  @NonNull
+  public RomScanJob rescanEmptyRoms(@Nullable RomScanListener listener) {
+    return this.romManager.scanRoms(getGamesWithEmptyRoms(), true, new CatalogScanListener(listener));
   }
 
   @SuppressWarnings("unused")
   @Nullable
   public GameInfo getGameByVpxFilename(@NonNull String filename) {
-    List<GameInfo> games = sqliteConnector.getGames(this);
-    for (GameInfo gameInfo : games) {
-      if (gameInfo.getGameFile().getName().equals(filename)) {
-        return gameInfo;
-      }
-    }
-    return null;
+    return findGame(catalog -> catalog.getGameByFileName(filename));
   }
 
   @NonNull
   public List<GameInfo> getGamesWithEmptyRoms() {
-    List<GameInfo> games = sqliteConnector.getGames(this);
-    List<GameInfo> result = new ArrayList<>();
-    for (GameInfo gameInfo : games) {
-      if (StringUtils.isEmpty(gameInfo.getRom())) {
-        result.add(gameInfo);
-      }
-    }
-    return result;
+    return new ArrayList<>(getCatalog().getGamesWithEmptyRoms());
   }
 
   @Nullable
   public GameInfo getGameByRom(@NonNull String romName) {
-    List<GameInfo> games = sqliteConnector.getGames(this);
-    for (GameInfo gameInfo : games) {
-      if (gameInfo.getRom() != null && gameInfo.getRom().equals(romName)) {
-        return gameInfo;
-      }
-    }
-    return null;
+    List<GameInfo> games = getCatalog().getGamesByRom(romName);
+    return games.isEmpty() ? null : games.get(0);
   }
 
   @Nullable
@@ -266,10 +488,45 @@ public class VPinService {
 
   @SuppressWarnings("unused")
   public GameInfo getGameByName(String table) {
-    return this.sqliteConnector.getGameByName(this, table);
+    return findGame(catalog -> catalog.getGameByName(table));
   }
 
   public GameInfo getGameByFile(File file) {
-    return this.sqliteConnector.getGameByFilename(this, file.getName());
+    return findGame(catalog -> catalog.getGameByFileName(file.getName()));
+  }
+
+  /**
+   * Resolves the game of the given table file on the DB executor, the future completes with null if there is none.
+   * The lookup itself is served from memory, but the game list may have to be loaded or updated first.
+   */
+  @NonNull
+  public CompletableFuture<GameInfo> getGameByFileAsync(@NonNull File file) {
+    return this.sqliteConnector.supplyAsync(() -> getGameByFile(file));
+  }
+
+  /**
+   * Publishes the scanned copies of the games once the ROM scan has finished.
+   */
+  private class CatalogScanListener implements RomScanListener {
+    private final RomScanListener listener;
+
+    private CatalogScanListener(@Nullable RomScanListener listener) {
+      this.listener = listener;
+    }
+
+    @Override
+    public void romScanned(RomScanJob job, GameInfo game) {
+      if (listener != null) {
+        listener.romScanned(job, game);
+      }
+    }
+
+    @Override
+    public void romScanFinished(RomScanJob job) {
+      catalogManager.update(catalog -> catalog.withGames(job.getScannedGames()));
+      if (listener != null) {
+        listener.romScanFinished(job);
+      }
+    }
   }
 }
@@ -0,0 +1,334 @@
+package de.mephisto.vpin.cfb;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Reader for Compound File Binary containers (the OLE2 format of .vpx files).
+ * Only the FAT, the directory and the sectors of the requested streams are read.
+ */
+public class CompoundFile implements Closeable {
+  private final static long SIGNATURE = 0xE11AB1A1E011CFD0L;
+  private final static int HEADER_SIZE = 512;
+  private final static int HEADER_DIFAT_ENTRIES = 109;
+  private final static int DIRECTORY_ENTRY_SIZE = 128;
+
+  private final static int END_OF_CHAIN = 0xFFFFFFFE;
+  private final static int NO_STREAM = 0xFFFFFFFF;
+
+  private final FileChannel channel;
+  private final long fileSize;
+
+  private int sectorSize;
+  private long sectorCount;
+  private int miniSectorSize;
+  private int miniStreamCutoff;
+
+  private int[] fat;
+  private int[] miniFat;
+  private List<DirectoryEntry> directory;
+  private byte[] miniStream;
+
+  public CompoundFile(@NonNull File file) throws IOException {
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      this.fileSize = channel.size();
+      readHeader();
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private void readHeader() throws IOException {
+    ByteBuffer header = read(0, HEADER_SIZE);
+    if (header.getLong(0) != SIGNATURE) {
+      throw new CompoundFileException("No compound file signature found.");
+    }
+
+    int sectorShift = header.getShort(0x1E);
+    int miniSectorShift = header.getShort(0x20);
+    if (sectorShift != 9 && sectorShift != 12) {
+      throw new CompoundFileException("Invalid sector shift " + sectorShift);
+    }
+    if (miniSectorShift < 0 || miniSectorShift > sectorShift) {
+      throw new CompoundFileException("Invalid mini sector shift " + miniSectorShift);
+    }
+    this.sectorSize = 1 << sectorShift;
+    this.miniSectorSize = 1 << miniSectorShift;
+    this.miniStreamCutoff = header.getInt(0x38);
+    //the header occupies the first sector, the last sector may be cut off
+    this.sectorCount = (fileSize + sectorSize - 1) / sectorSize - 1;
+
+    //the header fields are checked against the file size, so a corrupt file can't make us allocate huge arrays
+    int fatSectorCount = header.getInt(0x2C);
+    int firstDirectorySector = header.getInt(0x30);
+    int firstMiniFatSector = header.getInt(0x3C);
+    int firstDifatSector = header.getInt(0x44);
+    int difatSectorCount = header.getInt(0x48);
+    if (fatSectorCount < 0 || fatSectorCount > sectorCount) {
+      throw new CompoundFileException("Invalid FAT sector count " + fatSectorCount);
+    }
+    if (difatSectorCount < 0 || difatSectorCount > sectorCount) {
+      throw new CompoundFileException("Invalid DIFAT sector count " + difatSectorCount);
+    }
+
+    //collect the FAT sector ids from the header and the DIFAT chain
+    int[] fatSectors = new int[fatSectorCount];
+    int count = 0;
+    for (int i = 0; i < HEADER_DIFAT_ENTRIES && count < fatSectorCount; i++) {
+      fatSectors[count++] = header.getInt(0x4C + i * 4);
+    }
+    int difatSector = firstDifatSector;
+    for (int i = 0; i < difatSectorCount && count < fatSectorCount; i++) {
+      ByteBuffer difat = readSector(difatSector);
+      int entries = sectorSize / 4 - 1;
+      for (int j = 0; j < entries && count < fatSectorCount; j++) {
+        fatSectors[count++] = difat.getInt(j * 4);
+      }
+      difatSector = difat.getInt(entries * 4);
+    }
+
+    this.fat = new int[fatSectorCount * (sectorSize / 4)];
+    for (int i = 0; i < fatSectorCount; i++) {
+      ByteBuffer sector = readSector(fatSectors[i]);
+      sector.asIntBuffer().get(fat, i * (sectorSize / 4), sectorSize / 4);
+    }
+
+    this.directory = readDirectory(firstDirectorySector);
+
+    if (firstMiniFatSector != END_OF_CHAIN && firstMiniFatSector != NO_STREAM) {
+      ByteBuffer buffer = ByteBuffer.wrap(readChain(firstMiniFatSector, -1)).order(ByteOrder.LITTLE_ENDIAN);
+      this.miniFat = new int[buffer.remaining() / 4];
+      buffer.asIntBuffer().get(miniFat);
+    }
+    else {
+      this.miniFat = new int[0];
+    }
+  }
+
+  private List<DirectoryEntry> readDirectory(int firstSector) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(readChain(firstSector, -1)).order(ByteOrder.LITTLE_ENDIAN);
+    List<DirectoryEntry> entries = new ArrayList<>();
+    for (int offset = 0; offset + DIRECTORY_ENTRY_SIZE <= buffer.limit(); offset += DIRECTORY_ENTRY_SIZE) {
+      int nameLength = Math.min(64, buffer.getShort(offset + 0x40) & 0xFFFF);
+      String name = nameLength > 2 ? new String(buffer.array(), offset, nameLength - 2, StandardCharsets.UTF_16LE) : "";
+      int type = buffer.get(offset + 0x42);
+      int left = buffer.getInt(offset + 0x44);
+      int right = buffer.getInt(offset + 0x48);
+      int child = buffer.getInt(offset + 0x4C);
+      int start = buffer.getInt(offset + 0x74);
+      long size = buffer.getLong(offset + 0x78);
+      if (sectorSize == 512) {
+        //version 3 files may contain garbage in the high part
+        size = size & 0xFFFFFFFFL;
+      }
+      entries.add(new DirectoryEntry(entries.size(), name, type, left, right, child, start, size));
+    }
+
+    if (entries.isEmpty() || entries.get(0).getType() != DirectoryEntry.TYPE_ROOT) {
+      throw new CompoundFileException("No root directory entry found.");
+    }
+    return entries;
+  }
+
+  @NonNull
+  public DirectoryEntry getRoot() {
+    return directory.get(0);
+  }
+
+  /**
+   * Returns the entry for the given path, e.g. "GameStg/GameData", or null if it does not exist.
+   */
+  @Nullable
+  public DirectoryEntry getEntry(@NonNull String path) {
+    DirectoryEntry current = getRoot();
+    for (String name : path.split("/")) {
+      if (name.isEmpty()) {
+        continue;
+      }
+      current = getChild(current, name);
+      if (current == null) {
+        return null;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Returns the child entry with the given name, the children of a storage are stored as a binary tree.
+   */
+  @Nullable
+  public DirectoryEntry getChild(@NonNull DirectoryEntry storage, @NonNull String name) {
+    for (DirectoryEntry entry : getChildren(storage)) {
+      if (entry.getName().equalsIgnoreCase(name)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  @NonNull
+  public List<DirectoryEntry> getChildren(@NonNull DirectoryEntry storage) {
+    List<DirectoryEntry> children = new ArrayList<>();
+    if (!storage.isStorage()) {
+      return children;
+    }
+
+    Deque<Integer> stack = new ArrayDeque<>();
+    stack.push(storage.getChild());
+    while (!stack.isEmpty() && children.size() < directory.size()) {
+      int id = stack.pop();
+      if (id < 0 || id >= directory.size()) {
+        continue;
+      }
+      DirectoryEntry entry = directory.get(id);
+      children.add(entry);
+      stack.push(entry.getLeftSibling());
+      stack.push(entry.getRightSibling());
+    }
+    return children;
+  }
+
+  /**
+   * Reads the complete data of the given stream.
+   */
+  @NonNull
+  public byte[] readStream(@NonNull DirectoryEntry entry) throws IOException {
+    if (!entry.isStream()) {
+      throw new CompoundFileException(entry + " is not a stream.");
+    }
+    if (entry.getSize() > Integer.MAX_VALUE) {
+      throw new CompoundFileException(entry + " is too large.");
+    }
+
+    int size = (int) entry.getSize();
+    if (size < miniStreamCutoff) {
+      return readMiniStream(entry.getStartSector(), size);
+    }
+    return readChain(entry.getStartSector(), size);
+  }
+
+  private byte[] readMiniStream(int startSector, int size) throws IOException {
+    if (miniStream == null) {
+      DirectoryEntry root = getRoot();
+      if (root.getSize() > Integer.MAX_VALUE) {
+        throw new CompoundFileException("Invalid mini stream size " + root.getSize());
+      }
+      miniStream = readChain(root.getStartSector(), (int) root.getSize());
+    }
+
+    byte[] data = new byte[size];
+    int sector = startSector;
+    int offset = 0;
+    int steps = 0;
+    while (offset < size) {
+      if (sector < 0 || sector >= miniFat.length || steps++ > miniFat.length) {
+        throw new CompoundFileException("Invalid mini sector chain.");
+      }
+      int length = Math.min(miniSectorSize, size - offset);
+      int position = sector * miniSectorSize;
+      if (position + length > miniStream.length) {
+        throw new CompoundFileException("Mini sector " + sector + " is out of bounds.");
+      }
+      System.arraycopy(miniStream, position, data, offset, length);
+      offset += length;
+      sector = miniFat[sector];
+    }
+    return data;
+  }
+
+  /**
+   * Reads a sector chain, consecutive sectors are read with a single read.
+   *
+   * @param size the number of bytes to read or -1 to read the whole chain
+   */
+  private byte[] readChain(int startSector, int size) throws IOException {
+    if (size < -1) {
+      throw new CompoundFileException("Invalid stream size " + size);
+    }
+    List<int[]> runs = new ArrayList<>();
+    int sector = startSector;
+    int sectors = 0;
+    int maxSectors = size == -1 ? fat.length : (size + sectorSize - 1) / sectorSize;
+    while (sector != END_OF_CHAIN && sectors < maxSectors) {
+      if (sector < 0 || sector >= fat.length || sector >= sectorCount || sectors >= fat.length) {
+        throw new CompoundFileException("Invalid sector chain.");
+      }
+
+      int[] run = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+      if (run != null && run[0] + run[1] == sector) {
+        run[1]++;
+      }
+      else {
+        runs.add(new int[]{sector, 1});
+      }
+      sectors++;
+      sector = fat[sector];
+    }
+
+    long available = (long) sectors * sectorSize;
+    if (size != -1 && available < size) {
+      throw new CompoundFileException("Sector chain is shorter than the stream size.");
+    }
+
+    byte[] data = new byte[size == -1 ? (int) available : size];
+    int offset = 0;
+    for (int[] run : runs) {
+      int length = Math.min(run[1] * sectorSize, data.length - offset);
+      ByteBuffer target = ByteBuffer.wrap(data, offset, length);
+      readFully(target, sectorOffset(run[0]));
+      offset += length;
+    }
+    return data;
+  }
+
+  private ByteBuffer readSector(int sector) throws IOException {
+    if (sector < 0 || sector >= sectorCount) {
+      throw new CompoundFileException("Sector " + sector + " is out of bounds.");
+    }
+    return read(sectorOffset(sector), sectorSize);
+  }
+
+  private long sectorOffset(int sector) {
+    return (long) (sector + 1) * sectorSize;
+  }
+
+  private ByteBuffer read(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(buffer, position);
+    buffer.flip();
+    return buffer;
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    int start = buffer.position();
+    if (position + buffer.remaining() > fileSize) {
+      throw new CompoundFileException("Read beyond the end of the file at position " + position);
+    }
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position() - start);
+      if (read < 0) {
+        throw new CompoundFileException("Unexpected end of file at position " + position);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
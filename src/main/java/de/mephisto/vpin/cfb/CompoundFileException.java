@@ -0,0 +1,10 @@
+package de.mephisto.vpin.cfb;
+
+import java.io.IOException;
+
+public class CompoundFileException extends IOException {
+
+  public CompoundFileException(String message) {
+    super(message);
+  }
+}
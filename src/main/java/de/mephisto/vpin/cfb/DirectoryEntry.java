@@ -0,0 +1,75 @@
+package de.mephisto.vpin.cfb;
+
+/**
+ * A storage or stream entry of the compound file directory.
+ */
+public class DirectoryEntry {
+  public final static int TYPE_STORAGE = 1;
+  public final static int TYPE_STREAM = 2;
+  public final static int TYPE_ROOT = 5;
+
+  private final int id;
+  private final String name;
+  private final int type;
+  private final int leftSibling;
+  private final int rightSibling;
+  private final int child;
+  private final int startSector;
+  private final long size;
+
+  DirectoryEntry(int id, String name, int type, int leftSibling, int rightSibling, int child, int startSector, long size) {
+    this.id = id;
+    this.name = name;
+    this.type = type;
+    this.leftSibling = leftSibling;
+    this.rightSibling = rightSibling;
+    this.child = child;
+    this.startSector = startSector;
+    this.size = size;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getType() {
+    return type;
+  }
+
+  public boolean isStream() {
+    return type == TYPE_STREAM;
+  }
+
+  public boolean isStorage() {
+    return type == TYPE_STORAGE || type == TYPE_ROOT;
+  }
+
+  int getLeftSibling() {
+    return leftSibling;
+  }
+
+  int getRightSibling() {
+    return rightSibling;
+  }
+
+  int getChild() {
+    return child;
+  }
+
+  int getStartSector() {
+    return startSector;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "DirectoryEntry '" + name + "' (" + size + " bytes)";
+  }
+}
@@ -1,7 +1,7 @@
 package de.mephisto.vpin.highscores;
 
 import de.mephisto.vpin.GameInfo;
-import de.mephisto.vpin.VPinService;
+import de.mephisto.vpin.util.Lazy;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import org.apache.commons.lang3.StringUtils;
@@ -15,11 +15,11 @@ public class HighscoreManager {
   private final static Logger LOG = LoggerFactory.getLogger(HighscoreManager.class);
 
   private final Map<Integer, Highscore> cache = new HashMap<>();
-  private final HighscoreResolver highscoreResolver;
 
-  public HighscoreManager() {
-    this.highscoreResolver = new HighscoreResolver();
-  }
+  /**
+   * Lists the ROMs supported by PINemHi and extracts the VPReg.stg file, so it is only created once highscores are read.
+   */
+  private final Lazy<HighscoreResolver> highscoreResolver = new Lazy<>("highscore resolver", HighscoreResolver::new);
 
   @Nullable
   public Highscore getHighscore(@NonNull GameInfo game) {
@@ -28,7 +28,7 @@ public class HighscoreManager {
     }
 
     if (!cache.containsKey(game.getId())) {
-      Highscore highscore = highscoreResolver.loadHighscore(game);
+      Highscore highscore = highscoreResolver.get().loadHighscore(game);
       cache.put(game.getId(), highscore);
     }
 
@@ -36,7 +36,9 @@ public class HighscoreManager {
   }
 
   public void invalidateHighscore(@NonNull GameInfo game) {
-    highscoreResolver.refresh();
+    if (highscoreResolver.isCreated()) {
+      highscoreResolver.get().refresh();
+    }
     cache.remove(game.getId());
     LOG.info("Invalidated cached highscore of " + game);
   }
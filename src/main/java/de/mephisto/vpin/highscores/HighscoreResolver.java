@@ -222,12 +222,15 @@ class HighscoreResolver {
         return null;
       }
 
-      String romName = gameInfo.getRom();
-      String originalRom = gameInfo.getOriginalRom();
-
-      String pinemHiRom = originalRom != null ? originalRom : romName;
-      if (!this.supportedRoms.contains(pinemHiRom)) {
-        LOG.warn("The resolved rom name '" + originalRom + "' of game '" + gameInfo.getGameDisplayName() + "' is not supported by PINemHi.");
+      String pinemHiRom = null;
+      for (String rom : gameInfo.getRomFamily()) {
+        if (this.supportedRoms.contains(rom)) {
+          pinemHiRom = rom;
+          break;
+        }
+      }
+      if (pinemHiRom == null) {
+        LOG.warn("None of the rom names " + gameInfo.getRomFamily() + " of game '" + gameInfo.getGameDisplayName() + "' is supported by PINemHi.");
         return null;
       }
 
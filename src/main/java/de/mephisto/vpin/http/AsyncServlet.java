@@ -1,14 +1,14 @@
 package de.mephisto.vpin.http;
 
-import de.mephisto.vpin.GameInfo;
 import de.mephisto.vpin.VPinService;
-import de.mephisto.vpin.VPinServiceException;
-import de.mephisto.vpin.popper.PopperManager;
+import de.mephisto.vpin.util.StartupProfiler;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServlet;
@@ -18,6 +18,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AsyncServlet extends HttpServlet {
   private final static Logger LOG = LoggerFactory.getLogger(AsyncServlet.class);
@@ -32,48 +34,75 @@ public class AsyncServlet extends HttpServlet {
 
   public final static String PATH_SYSTEM_EXIT = "/systemExit";
   public final static String PATH_PING = "/ping";
+  public final static String PATH_BOOT_TIMELINE = "/bootTimeline";
 
-  private final PopperManager popperManager;
+  /**
+   * Requests received during startup wait for the service, which may take longer than the default timeout of Jetty.
+   */
+  private final static long STARTUP_TIMEOUT_MS = 300000;
 
-  public AsyncServlet(PopperManager popperManager) {
-    this.popperManager = popperManager;
+  private final CompletableFuture<VPinService> service;
+
+  public AsyncServlet(CompletableFuture<VPinService> service) {
+    this.service = service;
   }
 
-  protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    try {
-      String contextPath = request.getPathInfo();
-      String table = request.getParameter("table");
-      if (!StringUtils.isEmpty(table)) {
-        File tableFile = new File(table);
-        VPinService service = VPinService.create(true);
-        GameInfo game = service.getGameByFile(tableFile);
-        if (game == null) {
-          LOG.warn("No game found for name '" + tableFile.getName() + "' [" + request.getRequestURI() + "]");
-          this.writeResponse(request, response, STATUS_TABLE_NOT_FOUND);
-          return;
+  protected void doPost(HttpServletRequest request, HttpServletResponse response) {
+    String contextPath = request.getPathInfo();
+    String table = request.getParameter("table");
+
+    //the events are processed once the service is ready, the request thread is released in the meantime
+    AsyncContext async = request.startAsync();
+    async.setTimeout(STARTUP_TIMEOUT_MS);
+    AtomicBoolean responded = new AtomicBoolean();
+    async.addListener(new TimeoutListener(response, responded));
+    if (StringUtils.isEmpty(table)) {
+      service.whenComplete((vPinService, e) -> start(async, responded, () -> {
+        String status = STATUS_OK;
+        if (e != null) {
+          LOG.error("Failed to execute POST: " + e.getMessage());
+          status = STATUS_ERROR;
         }
+        else if (contextPath.equals(PATH_POPPER_LAUNCH)) {
+          LOG.info("Received Popper launch event.");
+          vPinService.notifyPopperLaunch();
+        }
+        writeResponse(async, response, status);
+      }));
+      return;
+    }
+
+    File tableFile = new File(table);
+    //the DB future only resolves the game, the listeners are notified on a container thread
+    service.thenCompose(vPinService -> vPinService.getGameByFileAsync(tableFile)).whenComplete((game, e) -> start(async, responded, () -> {
+      if (e != null) {
+        LOG.error("Failed to execute POST: " + e.getMessage(), e);
+        writeResponse(async, response, STATUS_ERROR);
+        return;
+      }
+      if (game == null) {
+        LOG.warn("No game found for name '" + tableFile.getName() + "' [" + request.getRequestURI() + "]");
+        writeResponse(async, response, STATUS_TABLE_NOT_FOUND);
+        return;
+      }
 
+      String status = STATUS_OK;
+      try {
+        VPinService vPinService = service.join();
         if (contextPath.equals(PATH_LAUNCH)) {
           LOG.info("Received table launch cmd for '" + tableFile.getName() + "'");
-          popperManager.notifyTableStatusChange(game, true);
+          vPinService.notifyTableStatusChange(game, true);
         }
         else if (contextPath.equals(PATH_EXIT)) {
           LOG.info("Received table exit cmd for '" + tableFile.getName() + "'");
-          popperManager.notifyTableStatusChange(game, false);
+          vPinService.notifyTableStatusChange(game, false);
         }
+      } catch (Exception ex) {
+        LOG.error("Failed to execute POST: " + ex.getMessage(), ex);
+        status = STATUS_ERROR;
       }
-      else {
-        if(contextPath.equals(PATH_POPPER_LAUNCH)) {
-          LOG.info("Received Popper launch event.");
-          popperManager.notifyPopperLaunch();
-        }
-      }
-
-      writeResponse(request, response, STATUS_OK);
-    } catch (VPinServiceException e) {
-      LOG.error("Failed to execute POST: " + e.getMessage());
-      writeResponse(request, response, STATUS_ERROR);
-    }
+      writeResponse(async, response, status);
+    }));
   }
 
   @Override
@@ -86,11 +115,43 @@ public class AsyncServlet extends HttpServlet {
     else if (contextPath.equals(PATH_PING)) {
       writeResponse(request, response, STATUS_OK);
     }
+    else if (contextPath.equals(PATH_BOOT_TIMELINE)) {
+      //answered without waiting for the service, so a slow startup can be watched while it is running
+      response.setContentType("text/plain;charset=utf-8");
+      writeResponse(request, response, StartupProfiler.getInstance().getTimeline());
+    }
   }
 
-  private void writeResponse(HttpServletRequest request, HttpServletResponse response, String msg) throws IOException {
+  /**
+   * Runs the task that writes the response, unless the request has timed out and has been answered already.
+   */
+  private void start(AsyncContext async, AtomicBoolean responded, Runnable task) {
+    if (!responded.compareAndSet(false, true)) {
+      LOG.warn("Skipped response, the request has timed out.");
+      return;
+    }
+    try {
+      async.start(task);
+    } catch (IllegalStateException e) {
+      LOG.warn("Skipped response, the request has been completed: " + e.getMessage());
+    }
+  }
+
+  private void writeResponse(HttpServletRequest request, HttpServletResponse response, String msg) {
+    writeResponse(request.startAsync(), response, msg);
+  }
+
+  private void writeResponse(AsyncContext async, HttpServletResponse response, String msg) {
+    try {
+      writeAsync(async, response, msg);
+    } catch (IOException e) {
+      LOG.error("Failed to write response: " + e.getMessage(), e);
+      async.complete();
+    }
+  }
+
+  private void writeAsync(AsyncContext async, HttpServletResponse response, String msg) throws IOException {
     ByteBuffer content = ByteBuffer.wrap(msg.getBytes(StandardCharsets.UTF_8));
-    AsyncContext async = request.startAsync();
     ServletOutputStream out = response.getOutputStream();
     out.setWriteListener(new WriteListener() {
       @Override
@@ -112,4 +173,37 @@ public class AsyncServlet extends HttpServlet {
       }
     });
   }
-}
\ No newline at end of file
+
+  /**
+   * Answers requests with an error if the service has not been ready in time.
+   */
+  private class TimeoutListener implements AsyncListener {
+    private final HttpServletResponse response;
+    private final AtomicBoolean responded;
+
+    private TimeoutListener(HttpServletResponse response, AtomicBoolean responded) {
+      this.response = response;
+      this.responded = responded;
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      if (responded.compareAndSet(false, true)) {
+        LOG.error("Failed to execute POST, the service has not been ready within " + STARTUP_TIMEOUT_MS + "ms.");
+        writeResponse(event.getAsyncContext(), response, STATUS_ERROR);
+      }
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+  }
+}
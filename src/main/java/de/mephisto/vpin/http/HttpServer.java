@@ -1,6 +1,6 @@
 package de.mephisto.vpin.http;
 
-import de.mephisto.vpin.popper.PopperManager;
+import de.mephisto.vpin.VPinService;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
@@ -9,6 +9,8 @@ import org.eclipse.jetty.servlet.ServletHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Manages the HTTP server.
  */
@@ -17,10 +19,13 @@ public class HttpServer {
   public static final int PORT = 8089;
 
   private Server server;
-  private final PopperManager popperManager;
+  private final CompletableFuture<VPinService> service;
 
-  public HttpServer(PopperManager popperManager) {
-    this.popperManager = popperManager;
+  /**
+   * @param service completed when the service has been initialized, requests received before wait for it
+   */
+  public HttpServer(CompletableFuture<VPinService> service) {
+    this.service = service;
     this.start();
   }
 
@@ -32,7 +37,7 @@ public class HttpServer {
       server.setConnectors(new Connector[]{connector});
       ServletHandler handler = new ServletHandler();
       server.setHandler(handler);
-      handler.addServletWithMapping(new ServletHolder(new AsyncServlet(this.popperManager)), "/service/*");
+      handler.addServletWithMapping(new ServletHolder(new AsyncServlet(this.service)), "/service/*");
       server.start();
     } catch (Exception e) {
       LOG.error("Failed to start HTTP server: " + e.getMessage(), e);
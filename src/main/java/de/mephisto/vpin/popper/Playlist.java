@@ -0,0 +1,55 @@
+package de.mephisto.vpin.popper;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A PinUP Popper playlist with its games in playlist order.
+ */
+public class Playlist {
+  private final int id;
+  private final String name;
+  private final List<Integer> gameIds;
+  private final BitSet members = new BitSet();
+
+  public Playlist(int id, String name, @NonNull List<Integer> gameIds) {
+    this.id = id;
+    this.name = name;
+    this.gameIds = Collections.unmodifiableList(gameIds);
+    for (Integer gameId : gameIds) {
+      if (gameId >= 0) {
+        members.set(gameId);
+      }
+    }
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  @NonNull
+  public List<Integer> getGameIds() {
+    return gameIds;
+  }
+
+  public boolean contains(int gameId) {
+    return gameId >= 0 && members.get(gameId);
+  }
+
+  @NonNull
+  BitSet getMembers() {
+    return members;
+  }
+
+  @Override
+  public String toString() {
+    return "Playlist '" + name + "' (" + gameIds.size() + " games)";
+  }
+}
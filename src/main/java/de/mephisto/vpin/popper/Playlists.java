@@ -0,0 +1,53 @@
+package de.mephisto.vpin.popper;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * All playlists of PinUP Popper, a game is active if it is part of at least one playlist.
+ * The membership of the game ids is stored in bit sets, so checking a game is a single bit lookup.
+ */
+public class Playlists {
+  private final List<Playlist> playlists;
+  private final Map<Integer, Playlist> byId = new HashMap<>();
+  private final BitSet active = new BitSet();
+
+  public Playlists(@NonNull List<Playlist> playlists) {
+    this.playlists = Collections.unmodifiableList(playlists);
+    for (Playlist playlist : playlists) {
+      byId.put(playlist.getId(), playlist);
+      active.or(playlist.getMembers());
+    }
+  }
+
+  @NonNull
+  public List<Playlist> getPlaylists() {
+    return playlists;
+  }
+
+  @Nullable
+  public Playlist getPlaylist(int id) {
+    return byId.get(id);
+  }
+
+  /**
+   * Returns true if the game is part of any playlist.
+   */
+  public boolean contains(int gameId) {
+    return gameId >= 0 && active.get(gameId);
+  }
+
+  /**
+   * Returns the ids of all games that are part of a playlist in ascending order.
+   */
+  @NonNull
+  public List<Integer> getGameIds() {
+    List<Integer> result = new ArrayList<>(active.cardinality());
+    for (int id = active.nextSetBit(0); id >= 0; id = active.nextSetBit(id + 1)) {
+      result.add(id);
+    }
+    return result;
+  }
+}
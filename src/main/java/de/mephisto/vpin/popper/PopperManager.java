@@ -74,27 +74,36 @@ public class PopperManager {
     highscoreManager.invalidateHighscore(game);
   }
 
+  /**
+   * Makes sure PinUP Popper notifies us about its launch and about launched and exited tables.
+   * All scripts are read at once and the missing commands are added in a single transaction.
+   */
   private void runConfigCheck() {
-    Emulators[] values = Emulators.values();
-    for (Emulators value : values) {
+    PopperScripts scripts = this.connector.getScripts();
+    PopperScripts changes = new PopperScripts();
+    for (Emulators value : Emulators.values()) {
       String emulatorName = Emulators.getEmulatorName(value);
-      String emulatorLaunchScript = this.connector.getEmulatorStartupScript(emulatorName);
-      if (!emulatorLaunchScript.contains(CURL_COMMAND_TABLE_START)) {
-        emulatorLaunchScript = emulatorLaunchScript + "\n" + CURL_COMMAND_TABLE_START + "\n";
-        this.connector.updateScript(emulatorName, "LaunchScript", emulatorLaunchScript);
+      String emulatorLaunchScript = scripts.getLaunchScript(emulatorName);
+      if (emulatorLaunchScript == null) {
+        LOG.info("Emulator '" + emulatorName + "' not found, skipping configuration check.");
+        continue;
       }
-      String emulatorExitScript = this.connector.getEmulatorExitScript(Emulators.getEmulatorName(value));
-      if (!emulatorExitScript.contains(CURL_COMMAND_TABLE_EXIT)) {
-        emulatorExitScript = emulatorExitScript + "\n" + CURL_COMMAND_TABLE_EXIT + "\n";
-        this.connector.updateScript(emulatorName, "PostScript", emulatorExitScript);
+      if (!emulatorLaunchScript.contains(CURL_COMMAND_TABLE_START)) {
+        changes.setLaunchScript(emulatorName, emulatorLaunchScript + "\n" + CURL_COMMAND_TABLE_START + "\n");
       }
 
-      String startupScript = this.connector.getStartupScript();
-      if (!startupScript.contains(CURL_COMMAND_POPPER_START)) {
-        startupScript = startupScript + "\n" + CURL_COMMAND_POPPER_START + "\n";
-        this.connector.updateStartupScript(startupScript);
+      String emulatorExitScript = scripts.getExitScript(emulatorName);
+      if (emulatorExitScript != null && !emulatorExitScript.contains(CURL_COMMAND_TABLE_EXIT)) {
+        changes.setExitScript(emulatorName, emulatorExitScript + "\n" + CURL_COMMAND_TABLE_EXIT + "\n");
       }
     }
+
+    String startupScript = scripts.getStartupScript();
+    if (startupScript != null && !startupScript.contains(CURL_COMMAND_POPPER_START)) {
+      changes.setStartupScript(startupScript + "\n" + CURL_COMMAND_POPPER_START + "\n");
+    }
+
+    this.connector.updateScripts(changes);
     LOG.info("Finished Popper configuration check.");
   }
 
@@ -0,0 +1,61 @@
+package de.mephisto.vpin.popper;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The scripts PinUP Popper runs on startup and for each emulator when a table is launched or exited.
+ * Used as snapshot of the configuration as well as for the set of scripts to change, unset scripts are left untouched.
+ */
+public class PopperScripts {
+  private String startupScript;
+  private final Map<String, String> launchScripts = new LinkedHashMap<>();
+  private final Map<String, String> exitScripts = new LinkedHashMap<>();
+
+  @Nullable
+  public String getStartupScript() {
+    return startupScript;
+  }
+
+  public void setStartupScript(@Nullable String startupScript) {
+    this.startupScript = startupScript;
+  }
+
+  /**
+   * The names of the emulators with a launch or exit script.
+   */
+  @NonNull
+  public Set<String> getEmulatorNames() {
+    Set<String> names = new LinkedHashSet<>(launchScripts.keySet());
+    names.addAll(exitScripts.keySet());
+    return Collections.unmodifiableSet(names);
+  }
+
+  @Nullable
+  public String getLaunchScript(@NonNull String emuName) {
+    return launchScripts.get(emuName);
+  }
+
+  public void setLaunchScript(@NonNull String emuName, @NonNull String script) {
+    launchScripts.put(emuName, script);
+  }
+
+  @Nullable
+  public String getExitScript(@NonNull String emuName) {
+    return exitScripts.get(emuName);
+  }
+
+  public void setExitScript(@NonNull String emuName, @NonNull String script) {
+    exitScripts.put(emuName, script);
+  }
+
+  public boolean isEmpty() {
+    return startupScript == null && launchScripts.isEmpty() && exitScripts.isEmpty();
+  }
+}
@@ -0,0 +1,120 @@
+package de.mephisto.vpin.roms;
+
+import java.io.File;
+
+/**
+ * The persisted scan data of a single game.
+ */
+public class GameScan {
+  private final int gameId;
+  private String displayName;
+  private String rom;
+  private int nvOffset;
+  private String hsFileName;
+
+  private String filePath;
+  private long fileSize = -1;
+  private long fileModified = -1;
+  private String fileDigest;
+
+  public GameScan(int gameId) {
+    this.gameId = gameId;
+  }
+
+  /**
+   * Creates a copy of the given scan.
+   */
+  GameScan(GameScan scan) {
+    this.gameId = scan.gameId;
+    this.displayName = scan.displayName;
+    this.rom = scan.rom;
+    this.nvOffset = scan.nvOffset;
+    this.hsFileName = scan.hsFileName;
+    this.filePath = scan.filePath;
+    this.fileSize = scan.fileSize;
+    this.fileModified = scan.fileModified;
+    this.fileDigest = scan.fileDigest;
+  }
+
+  public int getGameId() {
+    return gameId;
+  }
+
+  public String getDisplayName() {
+    return displayName;
+  }
+
+  public void setDisplayName(String displayName) {
+    this.displayName = displayName;
+  }
+
+  public String getRom() {
+    return rom;
+  }
+
+  public void setRom(String rom) {
+    this.rom = rom;
+  }
+
+  public int getNvOffset() {
+    return nvOffset;
+  }
+
+  public void setNvOffset(int nvOffset) {
+    this.nvOffset = nvOffset;
+  }
+
+  public String getHsFileName() {
+    return hsFileName;
+  }
+
+  public void setHsFileName(String hsFileName) {
+    this.hsFileName = hsFileName;
+  }
+
+  public String getFilePath() {
+    return filePath;
+  }
+
+  public void setFilePath(String filePath) {
+    this.filePath = filePath;
+  }
+
+  public long getFileSize() {
+    return fileSize;
+  }
+
+  public void setFileSize(long fileSize) {
+    this.fileSize = fileSize;
+  }
+
+  public long getFileModified() {
+    return fileModified;
+  }
+
+  public void setFileModified(long fileModified) {
+    this.fileModified = fileModified;
+  }
+
+  /**
+   * Returns the digest of the VPX file content, see {@link ScanResultCache#digest(File)}.
+   */
+  public String getFileDigest() {
+    return fileDigest;
+  }
+
+  public void setFileDigest(String fileDigest) {
+    this.fileDigest = fileDigest;
+  }
+
+  /**
+   * Returns true if the scan has been made for the given file in its current state.
+   * Scans migrated from the former properties store have no file identity.
+   */
+  public boolean matches(File file) {
+    return filePath != null
+        && filePath.equals(file.getAbsolutePath().replaceAll("\\\\", "/"))
+        && fileSize == file.length()
+        && fileModified == file.lastModified();
+  }
+}
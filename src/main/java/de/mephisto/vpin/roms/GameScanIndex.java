@@ -0,0 +1,85 @@
+package de.mephisto.vpin.roms;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory index of the game scans, stored in an array indexed by the game id.
+ * The PinUP Popper game ids are dense, so a lookup is a bounds check and an array read without any allocation.
+ * The scans are copied when they are stored, so changes of the passed scans don't affect the index.
+ * The returned scans are shared by all readers and must not be modified, an update replaces the scan of the game.
+ * Scans with a file digest can also be looked up by the content of their VPX file.
+ */
+class GameScanIndex {
+  private final static int INITIAL_CAPACITY = 256;
+
+  private volatile AtomicReferenceArray<GameScan> scans = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+  private final Map<String, GameScan> byDigest = new ConcurrentHashMap<>();
+
+  @Nullable
+  GameScan get(int gameId) {
+    AtomicReferenceArray<GameScan> current = scans;
+    if (gameId < 0 || gameId >= current.length()) {
+      return null;
+    }
+    return current.get(gameId);
+  }
+
+  /**
+   * Returns a scan of a VPX file with the given content digest.
+   */
+  @Nullable
+  GameScan getByDigest(@NonNull String digest) {
+    return byDigest.get(digest);
+  }
+
+  synchronized void put(@NonNull GameScan scan) {
+    int gameId = scan.getGameId();
+    if (gameId < 0) {
+      return;
+    }
+    ensureCapacity(gameId + 1);
+    set(new GameScan(scan));
+  }
+
+  synchronized void putAll(@NonNull Collection<GameScan> values) {
+    int maxId = -1;
+    for (GameScan scan : values) {
+      maxId = Math.max(maxId, scan.getGameId());
+    }
+    ensureCapacity(maxId + 1);
+    for (GameScan scan : values) {
+      if (scan.getGameId() >= 0) {
+        set(new GameScan(scan));
+      }
+    }
+  }
+
+  private void set(GameScan scan) {
+    GameScan previous = scans.getAndSet(scan.getGameId(), scan);
+    if (previous != null && previous.getFileDigest() != null) {
+      byDigest.remove(previous.getFileDigest(), previous);
+    }
+    if (scan.getFileDigest() != null) {
+      byDigest.put(scan.getFileDigest(), scan);
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    AtomicReferenceArray<GameScan> current = scans;
+    if (capacity <= current.length()) {
+      return;
+    }
+
+    AtomicReferenceArray<GameScan> grown = new AtomicReferenceArray<>(Math.max(capacity, current.length() * 2));
+    for (int i = 0; i < current.length(); i++) {
+      grown.set(i, current.get(i));
+    }
+    scans = grown;
+  }
+}
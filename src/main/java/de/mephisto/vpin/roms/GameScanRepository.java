@@ -0,0 +1,302 @@
+package de.mephisto.vpin.roms;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Stores the scan data of the games in a sidecar SQLite database.
+ * The database runs in WAL mode and every write is a transaction of upserts,
+ * so a crash never loses more than the last write and never corrupts older entries.
+ */
+public class GameScanRepository {
+  private final static Logger LOG = LoggerFactory.getLogger(GameScanRepository.class);
+
+  private final static String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS game_scan (" +
+      "game_id INTEGER PRIMARY KEY, " +
+      "display_name TEXT, " +
+      "rom TEXT, " +
+      "nv_offset INTEGER NOT NULL DEFAULT 0, " +
+      "hs_file_name TEXT, " +
+      "file_path TEXT, " +
+      "file_size INTEGER NOT NULL DEFAULT -1, " +
+      "file_modified INTEGER NOT NULL DEFAULT -1, " +
+      "file_digest TEXT, " +
+      "updated INTEGER NOT NULL)";
+  private final static String CREATE_ROM_INDEX = "CREATE INDEX IF NOT EXISTS game_scan_rom ON game_scan (rom)";
+  private final static String ADD_DIGEST_COLUMN = "ALTER TABLE game_scan ADD COLUMN file_digest TEXT";
+
+  private final static String UPSERT = "INSERT INTO game_scan " +
+      "(game_id, display_name, rom, nv_offset, hs_file_name, file_path, file_size, file_modified, file_digest, updated) " +
+      "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+      "ON CONFLICT(game_id) DO UPDATE SET display_name = excluded.display_name, rom = excluded.rom, " +
+      "nv_offset = excluded.nv_offset, hs_file_name = excluded.hs_file_name, file_path = excluded.file_path, " +
+      "file_size = excluded.file_size, file_modified = excluded.file_modified, file_digest = excluded.file_digest, " +
+      "updated = excluded.updated";
+
+  private final String url;
+  private Connection conn;
+
+  public GameScanRepository(@NonNull File dbFile) {
+    this.url = "jdbc:sqlite:" + dbFile.getAbsolutePath().replaceAll("\\\\", "/");
+    try {
+      Statement statement = getConnection().createStatement();
+      statement.execute("PRAGMA journal_mode=WAL");
+      statement.execute("PRAGMA synchronous=NORMAL");
+      statement.execute(CREATE_TABLE);
+      statement.execute(CREATE_ROM_INDEX);
+      if (!hasColumn(statement, "file_digest")) {
+        statement.execute(ADD_DIGEST_COLUMN);
+      }
+      statement.close();
+    } catch (SQLException e) {
+      LOG.error("Failed to initialize game scan database " + dbFile.getAbsolutePath() + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Databases of former versions lack the columns that have been added later.
+   */
+  private static boolean hasColumn(Statement statement, String column) throws SQLException {
+    try (ResultSet rs = statement.executeQuery("PRAGMA table_info(game_scan)")) {
+      while (rs.next()) {
+        if (column.equals(rs.getString("name"))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private Connection getConnection() throws SQLException {
+    if (conn == null || conn.isClosed()) {
+      conn = DriverManager.getConnection(url);
+    }
+    return conn;
+  }
+
+  @Nullable
+  public synchronized GameScan get(int gameId) {
+    try {
+      PreparedStatement statement = getConnection().prepareStatement("SELECT * FROM game_scan WHERE game_id = ?");
+      statement.setInt(1, gameId);
+      ResultSet rs = statement.executeQuery();
+      GameScan scan = null;
+      if (rs.next()) {
+        scan = createGameScan(rs);
+      }
+      rs.close();
+      statement.close();
+      return scan;
+    } catch (SQLException e) {
+      LOG.error("Failed to read scan of game " + gameId + ": " + e.getMessage(), e);
+    }
+    return null;
+  }
+
+  @NonNull
+  public synchronized List<GameScan> getAll() {
+    List<GameScan> result = new ArrayList<>();
+    try {
+      Statement statement = getConnection().createStatement();
+      ResultSet rs = statement.executeQuery("SELECT * FROM game_scan");
+      while (rs.next()) {
+        result.add(createGameScan(rs));
+      }
+      rs.close();
+      statement.close();
+    } catch (SQLException e) {
+      LOG.error("Failed to read game scans: " + e.getMessage(), e);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the ids of all games that use the given ROM.
+   */
+  @NonNull
+  public synchronized List<Integer> getGameIdsByRom(@NonNull String rom) {
+    List<Integer> result = new ArrayList<>();
+    try {
+      PreparedStatement statement = getConnection().prepareStatement("SELECT game_id FROM game_scan WHERE rom = ? ORDER BY game_id");
+      statement.setString(1, rom);
+      ResultSet rs = statement.executeQuery();
+      while (rs.next()) {
+        result.add(rs.getInt(1));
+      }
+      rs.close();
+      statement.close();
+    } catch (SQLException e) {
+      LOG.error("Failed to read games for ROM '" + rom + "': " + e.getMessage(), e);
+    }
+    return result;
+  }
+
+  public void save(@NonNull GameScan scan) {
+    saveAll(Collections.singletonList(scan));
+  }
+
+  /**
+   * Upserts all given scans in a single transaction.
+   */
+  public synchronized void saveAll(@NonNull Collection<GameScan> scans) {
+    if (scans.isEmpty()) {
+      return;
+    }
+
+    Connection connection = null;
+    try {
+      connection = getConnection();
+      connection.setAutoCommit(false);
+      PreparedStatement statement = connection.prepareStatement(UPSERT);
+      long now = System.currentTimeMillis();
+      for (GameScan scan : scans) {
+        statement.setInt(1, scan.getGameId());
+        statement.setString(2, scan.getDisplayName());
+        statement.setString(3, scan.getRom());
+        statement.setInt(4, scan.getNvOffset());
+        statement.setString(5, scan.getHsFileName());
+        statement.setString(6, scan.getFilePath());
+        statement.setLong(7, scan.getFileSize());
+        statement.setLong(8, scan.getFileModified());
+        statement.setString(9, scan.getFileDigest());
+        statement.setLong(10, now);
+        statement.addBatch();
+      }
+      statement.executeBatch();
+      statement.close();
+      connection.commit();
+    } catch (SQLException e) {
+      LOG.error("Failed to save " + scans.size() + " game scans: " + e.getMessage(), e);
+      rollback(connection);
+    } finally {
+      resetAutoCommit(connection);
+    }
+  }
+
+  public synchronized boolean isEmpty() {
+    try {
+      Statement statement = getConnection().createStatement();
+      ResultSet rs = statement.executeQuery("SELECT count(*) FROM game_scan");
+      boolean empty = !rs.next() || rs.getInt(1) == 0;
+      rs.close();
+      statement.close();
+      return empty;
+    } catch (SQLException e) {
+      LOG.error("Failed to count game scans: " + e.getMessage(), e);
+    }
+    return true;
+  }
+
+  /**
+   * Imports the "gameId.[id].[field]" entries of the former properties store once.
+   * The properties file is renamed afterwards, so it is kept as a backup but not imported again.
+   */
+  public void migrate(@NonNull File propertiesFile) {
+    if (!propertiesFile.exists()) {
+      return;
+    }
+
+    try {
+      Properties properties = new Properties();
+      try (FileInputStream in = new FileInputStream(propertiesFile)) {
+        properties.load(in);
+      }
+
+      Map<Integer, GameScan> scans = new TreeMap<>();
+      for (String key : properties.stringPropertyNames()) {
+        String[] segments = key.split("\\.");
+        if (segments.length != 3 || !segments[0].equals("gameId") || !StringUtils.isNumeric(segments[1])) {
+          continue;
+        }
+
+        int id = Integer.parseInt(segments[1]);
+        GameScan scan = scans.computeIfAbsent(id, GameScan::new);
+        String value = properties.getProperty(key);
+        switch (segments[2]) {
+          case "rom": {
+            scan.setRom(StringUtils.isEmpty(value) ? null : value);
+            break;
+          }
+          case "nvOffset": {
+            scan.setNvOffset(StringUtils.isNumeric(value.trim()) ? Integer.parseInt(value.trim()) : 0);
+            break;
+          }
+          case "hsFileName": {
+            scan.setHsFileName(StringUtils.isEmpty(value) ? null : value);
+            break;
+          }
+          case "displayName": {
+            scan.setDisplayName(value);
+            break;
+          }
+          default: {
+          }
+        }
+      }
+
+      if (isEmpty()) {
+        saveAll(scans.values());
+        LOG.info("Migrated " + scans.size() + " game scans from " + propertiesFile.getAbsolutePath());
+      }
+
+      File backup = new File(propertiesFile.getAbsolutePath() + ".migrated");
+      if (!propertiesFile.renameTo(backup)) {
+        LOG.error("Failed to rename migrated file " + propertiesFile.getAbsolutePath());
+      }
+    } catch (IOException e) {
+      LOG.error("Failed to migrate " + propertiesFile.getAbsolutePath() + ": " + e.getMessage(), e);
+    }
+  }
+
+  public synchronized void close() {
+    try {
+      if (conn != null) {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      LOG.error("Error closing game scan database: " + e.getMessage());
+    }
+  }
+
+  private static GameScan createGameScan(ResultSet rs) throws SQLException {
+    GameScan scan = new GameScan(rs.getInt("game_id"));
+    scan.setDisplayName(rs.getString("display_name"));
+    scan.setRom(rs.getString("rom"));
+    scan.setNvOffset(rs.getInt("nv_offset"));
+    scan.setHsFileName(rs.getString("hs_file_name"));
+    scan.setFilePath(rs.getString("file_path"));
+    scan.setFileSize(rs.getLong("file_size"));
+    scan.setFileModified(rs.getLong("file_modified"));
+    scan.setFileDigest(rs.getString("file_digest"));
+    return scan;
+  }
+
+  private static void rollback(Connection connection) {
+    try {
+      if (connection != null) {
+        connection.rollback();
+      }
+    } catch (SQLException e) {
+      LOG.error("Rollback failed: " + e.getMessage());
+    }
+  }
+
+  private static void resetAutoCommit(Connection connection) {
+    try {
+      if (connection != null) {
+        connection.setAutoCommit(true);
+      }
+    } catch (SQLException e) {
+      LOG.error("Failed to reset auto commit: " + e.getMessage());
+    }
+  }
+}
@@ -1,64 +1,47 @@
 package de.mephisto.vpin.roms;
 
 import de.mephisto.vpin.GameInfo;
-import de.mephisto.vpin.util.PropertiesStore;
 import de.mephisto.vpin.util.SystemInfo;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 public class RomManager {
   private final static Logger LOG = LoggerFactory.getLogger(RomManager.class);
 
-  private final PropertiesStore store;
+  private final static int MAX_SCAN_THREADS = 4;
 
-  private Map<String, String> aliasMapping = new HashMap<>();
+  private final static String REPOSITORY_DB = "scans.db";
+  private final static String LEGACY_REPOSITORY = "repository.properties";
+
+  private final GameScanRepository repository;
+  private final GameScanIndex index = new GameScanIndex();
+  private final ScanResultCache scanResultCache;
+
+  private final VPMAliasIndex aliasIndex;
 
   public RomManager() {
-    this.store = PropertiesStore.create("repository.properties");
-    loadAliasMapping();
-  }
-
-  private void loadAliasMapping() {
-    File vpmAliasFile = SystemInfo.getInstance().getVPMAliasFile();
-    try {
-      if (vpmAliasFile.exists()) {
-        FileInputStream fileInputStream = new FileInputStream(vpmAliasFile);
-        List<String> mappings = IOUtils.readLines(fileInputStream, "utf8");
-        fileInputStream.close();
-
-        for (String mapping : mappings) {
-          if (mapping.contains(",")) {
-            String[] split = mapping.split(",");
-            String[] aliases = Arrays.copyOfRange(split, 0, split.length - 1);
-            String originalName = split[split.length - 1];
-
-            for (String alias : aliases) {
-              aliasMapping.put(alias, originalName);
-            }
-          }
-        }
-      }
-    } catch (IOException e) {
-      LOG.error("Error loading " + vpmAliasFile.getAbsolutePath() + ": " + e.getMessage(), e);
-    }
+    this.repository = new GameScanRepository(new File(SystemInfo.RESOURCES, REPOSITORY_DB));
+    this.repository.migrate(new File(SystemInfo.RESOURCES, LEGACY_REPOSITORY));
+    this.index.putAll(repository.getAll());
+    this.scanResultCache = new ScanResultCache(index);
+    this.aliasIndex = new VPMAliasIndex(SystemInfo.getInstance().getVPMAliasFile());
   }
 
+  /**
+   * Scans the VPX file of the given game and sets the results on it.
+   * Games of the game list must not be passed here, they are shared and have to be copied first.
+   */
   @Nullable
   public String scanRom(GameInfo gameInfo) {
-    scanVPXFile(gameInfo);
+    String digest = scanVPXFile(gameInfo);
     String romName = gameInfo.getRom();
-    writeGameInfo(gameInfo);
+    writeGameInfo(gameInfo, digest);
     if (!StringUtils.isEmpty(romName)) {
       LOG.info("Finished scan of table " + gameInfo + ", found ROM '" + romName + "'.");
       return romName;
@@ -67,8 +50,52 @@ public class RomManager {
     return null;
   }
 
-  private void writeGameInfo(GameInfo game) {
+  /**
+   * Scans the VPX files of the given games in parallel.
+   * The results are written to the repository in one batch after the last game has been scanned.
+   *
+   * @param games    the games to scan
+   * @param forced   if false, the cached results of unchanged VPX files are used
+   * @param listener optional listener for the scan progress
+   * @return the running scan job, which can be cancelled
+   */
+  @NonNull
+  public RomScanJob scanRoms(@NonNull List<GameInfo> games, boolean forced, @Nullable RomScanListener listener) {
+    LOG.info("Starting ROM scan of " + games.size() + " tables.");
+    RomScanJob job = new RomScanJob(games, getScanThreadCount(), scanResultCache, !forced, listener, this::writeGameInfos);
+    job.start();
+    return job;
+  }
+
+  /**
+   * Parallel reads only pay off until the disk is saturated, spinning disks would mainly start to seek.
+   */
+  private int getScanThreadCount() {
+    return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_SCAN_THREADS));
+  }
+
+  private void writeGameInfo(GameInfo game, @Nullable String fileDigest) {
+    GameScan scan = toGameScan(game, fileDigest);
+    this.index.put(scan);
+    this.repository.save(scan);
+  }
+
+  private void writeGameInfos(List<GameInfo> games, Map<Integer, String> fileDigests) {
+    List<GameScan> scans = new ArrayList<>();
+    for (GameInfo game : games) {
+      scans.add(toGameScan(game, fileDigests.get(game.getId())));
+    }
+    this.index.putAll(scans);
+    this.repository.saveAll(scans);
+  }
+
+  /**
+   * Creates the scan to store for the scanned game.
+   * The ROM file and the original ROM of an aliased ROM are set on the game as well, for single and batch scans alike.
+   */
+  private GameScan toGameScan(GameInfo game, @Nullable String fileDigest) {
     String romName = game.getRom();
+    game.setOriginalRom(getOriginalRom(romName));
     if (romName != null && romName.length() > 0) {
       LOG.info("Update of " + game.getGameFile().getName() + " successful, written ROM name '" + romName + "'");
       File romFile = new File(SystemInfo.getInstance().getMameRomFolder(), romName + ".zip");
@@ -79,38 +106,96 @@ public class RomManager {
     else {
       LOG.info("Skipped Update of " + game.getGameFile().getName() + ", no rom name found.");
     }
-    this.store.set(formatGameKey(game.getId()) + ".rom", romName != null ? romName : "");
-    this.store.set(formatGameKey(game.getId()) + ".nvOffset", game.getNvOffset());
-    this.store.set(formatGameKey(game.getId()) + ".displayName", game.getGameDisplayName());
-    this.store.set(formatGameKey(game.getId()) + ".hsFileName", game.getHsFileName() != null ? game.getHsFileName() : "");
+
+    GameScan scan = new GameScan(game.getId());
+    scan.setDisplayName(game.getGameDisplayName());
+    scan.setRom(StringUtils.isEmpty(romName) ? null : romName);
+    scan.setNvOffset(game.getNvOffset());
+    scan.setHsFileName(game.getHsFileName());
+    File gameFile = game.getGameFile();
+    if (gameFile != null && gameFile.exists()) {
+      scan.setFilePath(gameFile.getAbsolutePath().replaceAll("\\\\", "/"));
+      scan.setFileSize(gameFile.length());
+      scan.setFileModified(gameFile.lastModified());
+      scan.setFileDigest(fileDigest);
+    }
+    return scan;
+  }
+
+  /**
+   * Returns the scan data of the game or null if the game has never been scanned.
+   * The scans are served from memory, the repository is only read once on startup.
+   * The returned scan must not be modified.
+   */
+  @Nullable
+  public GameScan getGameScan(int id) {
+    return this.index.get(id);
   }
 
   public String getRomName(int id) {
-    return this.store.getString(formatGameKey(id) + ".rom");
+    GameScan scan = getGameScan(id);
+    return scan != null ? scan.getRom() : null;
   }
 
   public int getNVOffset(int id) {
-    return this.store.getInt(formatGameKey(id) + ".nvOffset");
+    GameScan scan = getGameScan(id);
+    return scan != null ? scan.getNvOffset() : -1;
   }
 
   public String getHSFileName(int id) {
-    return this.store.getString(formatGameKey(id) + ".hsFileName");
+    GameScan scan = getGameScan(id);
+    return scan != null ? scan.getHsFileName() : null;
   }
 
   public String getOriginalRom(int id) {
-    String rom = this.store.getString(formatGameKey(id) + ".rom");
-    if (rom != null && aliasMapping.containsKey(rom)) {
-      return aliasMapping.get(rom);
-    }
-    return null;
+    return getOriginalRom(getRomName(id));
   }
 
-  private String formatGameKey(int id) {
-    return "gameId." + id;
+  @Nullable
+  public String getOriginalRom(@Nullable String rom) {
+    return aliasIndex.getOriginalRom(rom);
+  }
+
+  @NonNull
+  public VPMAliasIndex getAliasIndex() {
+    return aliasIndex;
+  }
+
+  /**
+   * Returns the ids of all games whose tables use the given ROM, looked up by the ROM index of the repository.
+   */
+  @NonNull
+  public List<Integer> getGameIdsByRom(@NonNull String rom) {
+    return this.repository.getGameIdsByRom(rom);
   }
 
   public boolean wasScanned(int id) {
-    return store.containsKey(formatGameKey(id) + ".rom");
+    return getGameScan(id) != null;
+  }
+
+  /**
+   * Returns true if the stored scan belongs to the current VPX file of the game.
+   */
+  public boolean isScanUpToDate(GameInfo game) {
+    GameScan scan = getGameScan(game.getId());
+    return scan != null && scan.matches(game.getGameFile());
+  }
+
+  /**
+   * Returns true if the game has never been scanned or if its VPX file has been changed since the last scan.
+   * Only the file attributes are checked, the VPX file is not read.
+   * Scans migrated from the former properties file have no file identity and are trusted.
+   */
+  public boolean needsScan(GameInfo game) {
+    GameScan scan = getGameScan(game.getId());
+    if (scan == null) {
+      return true;
+    }
+    return scan.getFilePath() != null && !scan.matches(game.getGameFile());
+  }
+
+  public void close() {
+    this.repository.close();
   }
 
   /**
@@ -119,11 +204,15 @@ public class RomManager {
    * We read the file from the end to save time.
    *
    * @param game the game to search the rom for
+   * @return the digest of the VPX file, which is stored with the scan
    */
-  void scanVPXFile(GameInfo game) {
+  @Nullable
+  String scanVPXFile(GameInfo game) {
+    String digest = ScanResultCache.digest(game.getGameFile());
     ScanResult result = VPXFileScanner.scan(game.getGameFile());
     game.setRom(result.getRom());
     game.setNvOffset(result.getNvOffset());
     game.setHsFileName(result.getHsFileName());
+    return digest;
   }
 }
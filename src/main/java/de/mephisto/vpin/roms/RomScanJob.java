@@ -0,0 +1,171 @@
+package de.mephisto.vpin.roms;
+
+import de.mephisto.vpin.GameInfo;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Scans the VPX files of a list of games on a bounded thread pool.
+ * Unchanged files are served from the stored scans unless the scan is forced, see {@link ScanResultCache}.
+ * The given games are not changed, the results are set on copies of them.
+ * The results are handed to the commit callback in one batch once all games have been scanned
+ * or the job has been cancelled.
+ */
+public class RomScanJob {
+  private final static Logger LOG = LoggerFactory.getLogger(RomScanJob.class);
+
+  private final List<GameInfo> games;
+  private final List<GameInfo> scannedGames = Collections.synchronizedList(new ArrayList<>());
+  private final Map<Integer, String> fileDigests = new ConcurrentHashMap<>();
+  private final ScanResultCache cache;
+  private final boolean useCache;
+  private final RomScanListener listener;
+  private final BiConsumer<List<GameInfo>, Map<Integer, String>> commit;
+  private final int threads;
+
+  private final AtomicInteger scanned = new AtomicInteger();
+  private final AtomicInteger filesRead = new AtomicInteger();
+  private final CountDownLatch finished = new CountDownLatch(1);
+  private volatile boolean cancelled = false;
+
+  RomScanJob(@NonNull List<GameInfo> games, int threads, @NonNull ScanResultCache cache, boolean useCache,
+             @Nullable RomScanListener listener, @NonNull BiConsumer<List<GameInfo>, Map<Integer, String>> commit) {
+    this.games = new ArrayList<>(games);
+    this.threads = threads;
+    this.cache = cache;
+    this.useCache = useCache;
+    this.listener = listener;
+    this.commit = commit;
+  }
+
+  void start() {
+    Thread thread = new Thread(this::run, "ROM Scan");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  private void run() {
+    long start = System.currentTimeMillis();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      for (GameInfo game : games) {
+        pool.execute(() -> scan(game));
+      }
+      pool.shutdown();
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      LOG.warn("ROM scan has been interrupted.");
+      pool.shutdownNow();
+      cancelled = true;
+    }
+
+    try {
+      commit.accept(getScannedGames(), new HashMap<>(fileDigests));
+      LOG.info("Finished ROM scan of " + scannedGames.size() + "/" + games.size() + " tables (" + filesRead.get() + " VPX files read) with " + threads + " threads in "
+          + (System.currentTimeMillis() - start) + "ms" + (cancelled ? " (cancelled)." : "."));
+    } catch (Exception e) {
+      LOG.error("Failed to commit ROM scan results: " + e.getMessage(), e);
+    } finally {
+      finished.countDown();
+      if (listener != null) {
+        listener.romScanFinished(this);
+      }
+    }
+  }
+
+  private void scan(GameInfo game) {
+    if (cancelled) {
+      return;
+    }
+
+    File gameFile = game.getGameFile();
+    ScanResult result = useCache ? cache.getUnchanged(game) : null;
+    if (result == null) {
+      //the digest is stored with the scan, so it is computed only once per scanned file
+      String digest = ScanResultCache.digest(gameFile);
+      result = useCache && digest != null ? cache.getByDigest(digest) : null;
+      if (result == null) {
+        result = VPXFileScanner.scan(gameFile);
+        filesRead.incrementAndGet();
+      }
+      result.setFileDigest(digest);
+    }
+    if (result.getFileDigest() != null) {
+      fileDigests.put(game.getId(), result.getFileDigest());
+    }
+
+    GameInfo scannedGame = game.copy();
+    scannedGame.setRom(result.getRom());
+    scannedGame.setNvOffset(result.getNvOffset());
+    scannedGame.setHsFileName(result.getHsFileName());
+    scannedGames.add(scannedGame);
+    scanned.incrementAndGet();
+
+    if (listener != null) {
+      listener.romScanned(this, scannedGame);
+    }
+  }
+
+  public void cancel() {
+    this.cancelled = true;
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  public boolean isFinished() {
+    return finished.getCount() == 0;
+  }
+
+  /**
+   * Blocks until the scan results have been committed.
+   */
+  public void await() throws InterruptedException {
+    finished.await();
+  }
+
+  /**
+   * Returns the copies of the games that have been scanned so far.
+   */
+  @NonNull
+  public List<GameInfo> getScannedGames() {
+    synchronized (scannedGames) {
+      return new ArrayList<>(scannedGames);
+    }
+  }
+
+  public int getScanned() {
+    return scanned.get();
+  }
+
+  public int getTotal() {
+    return games.size();
+  }
+
+  /**
+   * Returns the progress between 0 and 100.
+   */
+  public int getProgress() {
+    if (games.isEmpty()) {
+      return 100;
+    }
+    return getScanned() * 100 / getTotal();
+  }
+}
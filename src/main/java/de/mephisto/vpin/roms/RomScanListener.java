@@ -0,0 +1,13 @@
+package de.mephisto.vpin.roms;
+
+import de.mephisto.vpin.GameInfo;
+
+/**
+ * Listener for bulk ROM scans, the methods are invoked from the scan threads.
+ */
+public interface RomScanListener {
+
+  void romScanned(RomScanJob job, GameInfo game);
+
+  void romScanFinished(RomScanJob job);
+}
@@ -4,6 +4,7 @@ public class ScanResult {
   private int nvOffset = 0;
   private String rom;
   private String hsFileName;
+  private String fileDigest;
 
   public String getHsFileName() {
     return hsFileName;
@@ -29,6 +30,14 @@ public class ScanResult {
     this.rom = rom;
   }
 
+  public String getFileDigest() {
+    return fileDigest;
+  }
+
+  public void setFileDigest(String fileDigest) {
+    this.fileDigest = fileDigest;
+  }
+
   public boolean isScanComplete() {
     return this.nvOffset > 0 && this.rom != null && hsFileName != null;
   }
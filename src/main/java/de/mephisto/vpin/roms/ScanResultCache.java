@@ -0,0 +1,97 @@
+package de.mephisto.vpin.roms;
+
+import de.mephisto.vpin.GameInfo;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Looks up the stored scans of the {@link GameScanIndex}, so unchanged VPX files are not read again.
+ * A scan is valid as long as path, size and modification date of the file did not change.
+ * If they did, the digest of the head and tail region of the file is used to find a scan
+ * of a file with the same content, e.g. if a table has been touched, renamed or re-imported.
+ */
+class ScanResultCache {
+  private final static Logger LOG = LoggerFactory.getLogger(ScanResultCache.class);
+
+  private final static int DIGEST_HEAD_SIZE = 64 * 1024;
+  private final static int DIGEST_TAIL_SIZE = 1024 * 1024;
+
+  private final GameScanIndex index;
+
+  ScanResultCache(@NonNull GameScanIndex index) {
+    this.index = index;
+  }
+
+  /**
+   * Returns the stored result of the game if its VPX file did not change since the scan, the file is not read.
+   */
+  @Nullable
+  ScanResult getUnchanged(@NonNull GameInfo game) {
+    GameScan scan = index.get(game.getId());
+    if (scan != null && scan.matches(game.getGameFile())) {
+      return toResult(scan);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the stored result of a VPX file with the given content digest.
+   */
+  @Nullable
+  ScanResult getByDigest(@NonNull String digest) {
+    GameScan scan = index.getByDigest(digest);
+    if (scan != null) {
+      LOG.info("Re-using scan result of " + scan.getFilePath());
+      return toResult(scan);
+    }
+    return null;
+  }
+
+  private static ScanResult toResult(GameScan scan) {
+    ScanResult result = new ScanResult();
+    result.setRom(scan.getRom());
+    result.setNvOffset(Math.max(0, scan.getNvOffset()));
+    result.setHsFileName(scan.getHsFileName());
+    result.setFileDigest(scan.getFileDigest());
+    return result;
+  }
+
+  /**
+   * Creates a digest from the file size, the first 64KB and the last 1MB of the file.
+   */
+  @Nullable
+  static String digest(@NonNull File file) {
+    try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+      MessageDigest md = MessageDigest.getInstance("MD5");
+      long length = in.length();
+      md.update(String.valueOf(length).getBytes());
+
+      byte[] head = new byte[(int) Math.min(DIGEST_HEAD_SIZE, length)];
+      in.readFully(head);
+      md.update(head);
+
+      long tailStart = Math.max(head.length, length - DIGEST_TAIL_SIZE);
+      byte[] tail = new byte[(int) (length - tailStart)];
+      in.seek(tailStart);
+      in.readFully(tail);
+      md.update(tail);
+
+      StringBuilder builder = new StringBuilder();
+      for (byte b : md.digest()) {
+        builder.append(String.format("%02x", b));
+      }
+      return builder.toString();
+    } catch (IOException | NoSuchAlgorithmException e) {
+      LOG.error("Failed to create digest for " + file.getAbsolutePath() + ": " + e.getMessage(), e);
+    }
+    return null;
+  }
+}
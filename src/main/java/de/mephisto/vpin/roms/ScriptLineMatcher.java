@@ -0,0 +1,283 @@
+package de.mephisto.vpin.roms;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Searches the ROM name, the NVOffset and the highscore file name in the raw bytes of a script line.
+ * All keywords are matched in a single pass with an Aho-Corasick automaton, only the values found are decoded.
+ * <p>
+ * The rules are the ones of the former regex based scanner:
+ * a ROM/HSFileName line contains the keyword followed by a '=' and two double quotes,
+ * NVOffset lines start with "NVOffset" followed by the value in brackets.
+ */
+class ScriptLineMatcher {
+
+  final static List<String> ROM_PATTERNS = Arrays.asList("cGameName", "cgamename", "RomSet1", "GameName");
+  final static String HS_FILENAME_PATTERN = "HSFileName";
+  final static String NVOFFSET_PATTERN = "NVOffset";
+
+  private final static int MAX_ROM_FILENAME_LENGTH = 16;
+  private final static int MAX_FILENAME_LENGTH = 128;
+
+  private final static int HS_FILENAME = ROM_PATTERNS.size();
+  private final static int NVOFFSET = HS_FILENAME + 1;
+
+  private final static byte[][] KEYWORDS;
+
+  static {
+    KEYWORDS = new byte[NVOFFSET + 1][];
+    for (int i = 0; i < ROM_PATTERNS.size(); i++) {
+      KEYWORDS[i] = ROM_PATTERNS.get(i).getBytes(StandardCharsets.US_ASCII);
+    }
+    KEYWORDS[HS_FILENAME] = HS_FILENAME_PATTERN.getBytes(StandardCharsets.US_ASCII);
+    KEYWORDS[NVOFFSET] = NVOFFSET_PATTERN.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * The automaton as a full transition table, so each byte costs a single lookup.
+   */
+  private final static int[][] TRANSITIONS;
+
+  /**
+   * The bit mask of the keywords that end in the given state.
+   */
+  private final static int[] OUTPUT;
+
+  static {
+    int maxStates = 1;
+    for (byte[] keyword : KEYWORDS) {
+      maxStates += keyword.length;
+    }
+
+    int[][] transitions = new int[maxStates][256];
+    int[] output = new int[maxStates];
+    for (int[] row : transitions) {
+      Arrays.fill(row, -1);
+    }
+
+    int states = 1;
+    for (int k = 0; k < KEYWORDS.length; k++) {
+      int state = 0;
+      for (byte b : KEYWORDS[k]) {
+        int c = b & 0xFF;
+        if (transitions[state][c] == -1) {
+          transitions[state][c] = states++;
+        }
+        state = transitions[state][c];
+      }
+      output[state] |= 1 << k;
+    }
+
+    //breadth-first resolution of the failure links into the transition table
+    int[] failure = new int[maxStates];
+    Queue<Integer> queue = new ArrayDeque<>();
+    for (int c = 0; c < 256; c++) {
+      if (transitions[0][c] == -1) {
+        transitions[0][c] = 0;
+      }
+      else {
+        failure[transitions[0][c]] = 0;
+        queue.add(transitions[0][c]);
+      }
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.poll();
+      output[state] |= output[failure[state]];
+      for (int c = 0; c < 256; c++) {
+        int next = transitions[state][c];
+        if (next == -1) {
+          transitions[state][c] = transitions[failure[state]][c];
+        }
+        else {
+          failure[next] = transitions[failure[state]][c];
+          queue.add(next);
+        }
+      }
+    }
+
+    TRANSITIONS = Arrays.copyOf(transitions, states);
+    OUTPUT = Arrays.copyOf(output, states);
+  }
+
+  private final Charset charset;
+
+  /**
+   * First index of each keyword in the current line.
+   */
+  private final int[] positions = new int[KEYWORDS.length];
+
+  ScriptLineMatcher(@NonNull Charset charset) {
+    this.charset = charset;
+  }
+
+  /**
+   * Applies the values found in the given line to the scan result, values that are already set are kept.
+   */
+  void match(byte[] line, int offset, int length, @NonNull ScanResult result) {
+    Arrays.fill(positions, -1);
+    int end = offset + length;
+    int found = 0;
+    int firstApostrophe = -1;
+    int lastQuote = -1;
+    int secondLastQuote = -1;
+    boolean carriageReturn = false;
+
+    int state = 0;
+    for (int i = offset; i < end; i++) {
+      byte b = line[i];
+      state = TRANSITIONS[state][b & 0xFF];
+      int out = OUTPUT[state];
+      if (out != 0 && (out & ~found) != 0) {
+        for (int k = 0; k < KEYWORDS.length; k++) {
+          if ((out & (1 << k)) != 0 && positions[k] == -1) {
+            positions[k] = i - KEYWORDS[k].length + 1;
+          }
+        }
+        found |= out;
+      }
+
+      if (b == '"') {
+        secondLastQuote = lastQuote;
+        lastQuote = i;
+      }
+      else if (b == '\'' && firstApostrophe == -1) {
+        firstApostrophe = i;
+      }
+      else if (b == '\r') {
+        carriageReturn = true;
+      }
+    }
+
+    if (found == 0) {
+      return;
+    }
+
+    int indent = offset;
+    while (indent < end && (line[indent] & 0xFF) <= ' ') {
+      indent++;
+    }
+
+    if (result.getRom() == null && !carriageReturn) {
+      for (int k = 0; k < ROM_PATTERNS.size(); k++) {
+        if (matchesAssignment(line, positions[k], KEYWORDS[k].length, secondLastQuote)) {
+          if (!isCommented(positions[k], firstApostrophe, indent - offset)) {
+            result.setRom(extractValue(line, end, positions[k] + KEYWORDS[k].length + 1, MAX_ROM_FILENAME_LENGTH));
+          }
+          break;
+        }
+      }
+    }
+
+    if (result.getNvOffset() <= 0 && positions[NVOFFSET] == indent) {
+      Integer nvOffset = extractNvOffset(line, offset, end);
+      if (nvOffset != null) {
+        result.setNvOffset(nvOffset);
+      }
+    }
+
+    if (result.getHsFileName() == null && !carriageReturn) {
+      int position = positions[HS_FILENAME];
+      if (matchesAssignment(line, position, KEYWORDS[HS_FILENAME].length, secondLastQuote)
+          && !isCommented(position, firstApostrophe, indent - offset)) {
+        result.setHsFileName(extractValue(line, end, position + KEYWORDS[HS_FILENAME].length + 1, MAX_FILENAME_LENGTH));
+      }
+    }
+  }
+
+  /**
+   * Checks for a '=' behind the keyword that is followed by two double quotes.
+   */
+  private static boolean matchesAssignment(byte[] line, int position, int keywordLength, int secondLastQuote) {
+    if (position == -1 || secondLastQuote == -1) {
+      return false;
+    }
+    for (int i = position + keywordLength; i < secondLastQuote; i++) {
+      if (line[i] == '=') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The former scanner compared the apostrophe index of the trimmed line with the keyword index of the untrimmed one.
+   */
+  private static boolean isCommented(int position, int firstApostrophe, int indent) {
+    return firstApostrophe != -1 && firstApostrophe - indent < position;
+  }
+
+  /**
+   * Returns the value between the first two double quotes behind the given index or null if the line ends before.
+   */
+  @Nullable
+  String extractValue(byte[] line, int end, int from, int maxLength) {
+    int start = indexOfQuote(line, from, end);
+    if (start == -1) {
+      return null;
+    }
+    start++;
+
+    int valueEnd = indexOfQuote(line, start, end);
+    if (valueEnd == -1) {
+      return null;
+    }
+
+    //the former scanner measured the value length relative to the opening quote
+    if ((valueEnd - start) - (start - from) >= maxLength) {
+      return new String(line, start, end - start, charset);
+    }
+
+    while (start < valueEnd && (line[start] & 0xFF) <= ' ') {
+      start++;
+    }
+    while (valueEnd > start && (line[valueEnd - 1] & 0xFF) <= ' ') {
+      valueEnd--;
+    }
+    return new String(line, start, valueEnd - start, charset);
+  }
+
+  private static int indexOfQuote(byte[] line, int from, int end) {
+    for (int i = from; i < end; i++) {
+      if (line[i] == '"') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static Integer extractNvOffset(byte[] line, int offset, int end) {
+    int open = -1;
+    for (int i = offset; i < end; i++) {
+      if (line[i] == '(') {
+        open = i;
+        break;
+      }
+    }
+
+    int close = -1;
+    for (int i = end - 1; i > open; i--) {
+      if (line[i] == ')') {
+        close = i;
+        break;
+      }
+    }
+
+    if (open == -1 || close == -1) {
+      return null;
+    }
+
+    try {
+      return Integer.parseInt(new String(line, open + 1, close - open - 1, StandardCharsets.US_ASCII));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package de.mephisto.vpin.roms;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Index of the VPinMAME "VPMAlias.txt" file, each line maps one or more alias ROM names to the original ROM name:
+ * "alias1,alias2,original".
+ * Tables using ROMs of the same family share the nvram file of the original ROM.
+ * The file is read again on the next lookup after its modification date has changed.
+ */
+public class VPMAliasIndex {
+  private final static Logger LOG = LoggerFactory.getLogger(VPMAliasIndex.class);
+
+  /**
+   * The file attributes are checked at most once in this interval, lookups are often made in loops over all games.
+   */
+  private final static long CHECK_INTERVAL_MS = 1000;
+
+  private final File aliasFile;
+  private final long checkInterval;
+
+  private volatile Mapping mapping = new Mapping(Collections.emptyMap(), Collections.emptyMap(), -1);
+  private volatile long lastCheck = -1;
+
+  public VPMAliasIndex(@NonNull File aliasFile) {
+    this(aliasFile, CHECK_INTERVAL_MS);
+  }
+
+  VPMAliasIndex(@NonNull File aliasFile, long checkInterval) {
+    this.aliasFile = aliasFile;
+    this.checkInterval = checkInterval;
+  }
+
+  /**
+   * Returns the original ROM name for the given alias or null if the given ROM is no alias.
+   */
+  @Nullable
+  public String getOriginalRom(@Nullable String rom) {
+    if (rom == null) {
+      return null;
+    }
+    return getMapping().originals.get(rom);
+  }
+
+  /**
+   * Returns the aliases of the given original ROM name.
+   */
+  @NonNull
+  public List<String> getAliases(@NonNull String originalRom) {
+    return getMapping().aliases.getOrDefault(originalRom, Collections.emptyList());
+  }
+
+  /**
+   * Returns all ROM names sharing the original ROM of the given ROM.
+   * The original ROM name is the first element, followed by its aliases.
+   * A ROM without aliases is a family of its own.
+   */
+  @NonNull
+  public List<String> getFamily(@NonNull String rom) {
+    Mapping current = getMapping();
+    String original = current.originals.getOrDefault(rom, rom);
+    List<String> aliases = current.aliases.get(original);
+    if (aliases == null) {
+      return Collections.singletonList(rom);
+    }
+
+    List<String> family = new ArrayList<>(aliases.size() + 1);
+    family.add(original);
+    family.addAll(aliases);
+    return family;
+  }
+
+  private Mapping getMapping() {
+    long now = System.currentTimeMillis();
+    if (now - lastCheck >= checkInterval) {
+      synchronized (this) {
+        if (now - lastCheck >= checkInterval) {
+          long modified = aliasFile.lastModified();
+          if (modified != mapping.modified) {
+            mapping = load(modified);
+          }
+          lastCheck = now;
+        }
+      }
+    }
+    return mapping;
+  }
+
+  private Mapping load(long modified) {
+    Map<String, String> originals = new HashMap<>();
+    Map<String, List<String>> aliases = new HashMap<>();
+    if (modified == 0) {
+      return new Mapping(originals, aliases, modified);
+    }
+
+    try {
+      List<String> lines = FileUtils.readLines(aliasFile, StandardCharsets.UTF_8);
+      for (String line : lines) {
+        if (!line.contains(",") || line.trim().startsWith("#")) {
+          continue;
+        }
+
+        String[] split = line.split(",");
+        String originalName = split[split.length - 1].trim();
+        if (StringUtils.isEmpty(originalName)) {
+          continue;
+        }
+
+        for (int i = 0; i < split.length - 1; i++) {
+          String alias = split[i].trim();
+          if (alias.isEmpty() || alias.equals(originalName)) {
+            continue;
+          }
+          originals.put(alias, originalName);
+          List<String> family = aliases.computeIfAbsent(originalName, k -> new ArrayList<>());
+          if (!family.contains(alias)) {
+            family.add(alias);
+          }
+        }
+      }
+      LOG.info("Loaded " + originals.size() + " ROM aliases from " + aliasFile.getAbsolutePath());
+    } catch (IOException e) {
+      LOG.error("Error loading " + aliasFile.getAbsolutePath() + ": " + e.getMessage(), e);
+    }
+
+    for (Map.Entry<String, List<String>> entry : aliases.entrySet()) {
+      entry.setValue(Collections.unmodifiableList(entry.getValue()));
+    }
+    return new Mapping(originals, aliases, modified);
+  }
+
+  private static class Mapping {
+    private final Map<String, String> originals;
+    private final Map<String, List<String>> aliases;
+    private final long modified;
+
+    private Mapping(Map<String, String> originals, Map<String, List<String>> aliases, long modified) {
+      this.originals = originals;
+      this.aliases = aliases;
+      this.modified = modified;
+    }
+  }
+}
@@ -1,74 +1,83 @@
 package de.mephisto.vpin.roms;
 
-import de.mephisto.vpin.util.ReverseLineInputStream;
+import de.mephisto.vpin.util.ReverseLineReader;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.nio.charset.Charset;
 
 /**
- * Checks the different lines that are in the vpx file.
- * Usually the variable not does differ that much.
- * We read the file from the end to save time.
+ * Checks the different lines of the table script.
+ * The script is read from the GameData stream of the vpx file, so images and sounds are never touched.
+ * If the script can't be extracted, the whole file is read from the end instead.
  */
 public class VPXFileScanner {
   private final static Logger LOG = LoggerFactory.getLogger(VPXFileScanner.class);
 
-  private final static int MAX_ROM_FILENAME_LENGTH = 16;
-  private final static int MAX_FILENAME_LENGTH = 128;
+  public static ScanResult scan(@NonNull File gameFile) {
+    byte[] script = null;
+    try {
+      script = VPXScriptReader.readScript(gameFile);
+    } catch (IOException | RuntimeException e) {
+      //corrupt files must not stop the scan of the other tables
+      LOG.info("Failed to read script of " + gameFile.getAbsolutePath() + ", scanning complete file: " + e.getMessage());
+    }
 
-  private final static List<String> PATTERNS = Arrays.asList("cGameName", "cgamename", "RomSet1", "GameName");
+    if (script != null) {
+      return scanScript(script);
+    }
+    return scanFile(gameFile);
+  }
 
-  private final static List<Pattern> patternList = new ArrayList<>();
+  /**
+   * Matches the lines of the script, starting with the last one.
+   */
+  static ScanResult scanScript(@NonNull byte[] script) {
+    ScanResult result = new ScanResult();
+    ScriptLineMatcher matcher = new ScriptLineMatcher(Charset.defaultCharset());
 
-  static {
-    PATTERNS.forEach(p -> patternList.add(Pattern.compile(".*" + p + ".*=.*\".*\".*")));
-  }
+    int end = script.length;
+    while (end >= 0 && !result.isScanComplete()) {
+      int start = end - 1;
+      while (start >= 0 && script[start] != '\n') {
+        start--;
+      }
 
-  private static final Pattern HS_FILENAME_PATTERN = Pattern.compile(".*HSFileName.*=.*\".*\".*");
+      int lineEnd = end;
+      if (lineEnd > start + 1 && script[lineEnd - 1] == '\r') {
+        lineEnd--;
+      }
+      matcher.match(script, start + 1, lineEnd - start - 1, result);
+      end = start;
+    }
+    return result;
+  }
 
-  public static ScanResult scan(@NonNull File gameFile) {
+  private static ScanResult scanFile(@NonNull File gameFile) {
     ScanResult result = new ScanResult();
+    ScriptLineMatcher matcher = new ScriptLineMatcher(Charset.defaultCharset());
 
-    BufferedReader bufferedReader = null;
-    ReverseLineInputStream reverseLineInputStream = null;
-    String line = null;
+    ReverseLineReader reader = null;
     try {
-      reverseLineInputStream = new ReverseLineInputStream(gameFile);
-      bufferedReader = new BufferedReader(new InputStreamReader(reverseLineInputStream));
-
-      bufferedReader.readLine();//skip last line if empty
-      int count = 0;
-      while ((line = bufferedReader.readLine()) != null || count < 1000) {
-        count++;
+      reader = new ReverseLineReader(gameFile);
 
+      reader.previousLine();//skip last line if empty
+      while (reader.previousLine()) {
         if (result.isScanComplete()) {
           break;
         }
 
-        if (line != null) {
-          lineSearchRom(result, line);
-          lineSearchNvOffset(result, line);
-          lineSearchHsFileName(result, line);
-        }
+        matcher.match(reader.getLineBuffer(), reader.getLineOffset(), reader.getLineLength(), result);
       }
     } catch (Exception e) {
-      LOG.error("Failed to read rom line '" + line + "' for  " + gameFile.getAbsolutePath() + ": " + e.getMessage(), e);
+      LOG.error("Failed to scan " + gameFile.getAbsolutePath() + ": " + e.getMessage(), e);
     } finally {
       try {
-        if (reverseLineInputStream != null) {
-          reverseLineInputStream.close();
-        }
-
-        if (bufferedReader != null) {
-          bufferedReader.close();
+        if (reader != null) {
+          reader.close();
         }
       } catch (Exception e) {
         LOG.error("Failed to close vpx file stream: " + e.getMessage(), e);
@@ -77,77 +86,4 @@ public class VPXFileScanner {
 
     return result;
   }
-
-  private static void lineSearchHsFileName(@NonNull ScanResult result, @NonNull String line) {
-    if(result.getHsFileName() != null) {
-      return;
-    }
-
-    if (HS_FILENAME_PATTERN.matcher(line).matches()) {
-      String pattern = "HSFileName";
-      if (line.contains("'") && line.trim().indexOf("'") < line.indexOf(pattern)) {
-        return;
-      }
-
-      line = line.substring(line.indexOf(pattern) + pattern.length() + 1);
-      int start = line.indexOf("\"") + 1;
-      String hsFileName = line.substring(start);
-      int end = hsFileName.indexOf("\"");
-
-      if (end - start < MAX_FILENAME_LENGTH) {
-        hsFileName = hsFileName.substring(0, end).trim();
-      }
-
-      result.setHsFileName(hsFileName);
-    }
-  }
-
-  private static void lineSearchNvOffset(@NonNull ScanResult result, @NonNull String line) {
-    if (result.getNvOffset() > 0) {
-      return;
-    }
-
-    if (line.trim().startsWith("NVOffset")) {
-      String nvOffsetString = line.substring(line.indexOf("(") + 1, line.lastIndexOf(")"));
-      result.setNvOffset(Integer.parseInt(nvOffsetString));
-    }
-  }
-
-  /**
-   * Single line eval for rom name
-   */
-  private static void lineSearchRom(@NonNull ScanResult result, @NonNull String line) {
-    if (result.getRom() != null) {
-      return;
-    }
-
-    int patternMatch = matchesPatterns(line);
-    if (patternMatch != -1) {
-      String pattern = PATTERNS.get(patternMatch);
-      if (line.contains("'") && line.trim().indexOf("'") < line.indexOf(pattern)) {
-        return;
-      }
-
-      line = line.substring(line.indexOf(pattern) + pattern.length() + 1);
-      int start = line.indexOf("\"") + 1;
-      String rom = line.substring(start);
-      int end = rom.indexOf("\"");
-
-      if (end - start < MAX_ROM_FILENAME_LENGTH) {
-        rom = rom.substring(0, end).trim();
-      }
-
-      result.setRom(rom);
-    }
-  }
-
-  private static int matchesPatterns(String line) {
-    for (int i = 0; i < patternList.size(); i++) {
-      Pattern pattern = patternList.get(i);
-      if (pattern.matcher(line).matches()) {
-        return i;
-      }
-    }
-    return -1;
-  }
 }
@@ -0,0 +1,61 @@
+package de.mephisto.vpin.roms;
+
+import de.mephisto.vpin.cfb.CompoundFile;
+import de.mephisto.vpin.cfb.CompoundFileException;
+import de.mephisto.vpin.cfb.DirectoryEntry;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the table script from the "GameStg/GameData" stream of a .vpx file.
+ * The stream is a sequence of records (length, tag, data), the script is stored in the "CODE" record
+ * whose length only covers the tag, the script itself is prefixed with its own length.
+ */
+class VPXScriptReader {
+  private final static String GAME_DATA = "GameStg/GameData";
+
+  private final static String TAG_CODE = "CODE";
+  private final static String TAG_END = "ENDB";
+
+  @NonNull
+  static byte[] readScript(@NonNull File vpxFile) throws IOException {
+    try (CompoundFile compoundFile = new CompoundFile(vpxFile)) {
+      DirectoryEntry entry = compoundFile.getEntry(GAME_DATA);
+      if (entry == null || !entry.isStream()) {
+        throw new CompoundFileException("No " + GAME_DATA + " stream found.");
+      }
+      return readScript(compoundFile.readStream(entry));
+    }
+  }
+
+  @NonNull
+  static byte[] readScript(@NonNull byte[] gameData) throws CompoundFileException {
+    ByteBuffer buffer = ByteBuffer.wrap(gameData).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.remaining() >= 8) {
+      int length = buffer.getInt();
+      String tag = new String(gameData, buffer.position(), 4, StandardCharsets.US_ASCII);
+
+      if (tag.equals(TAG_CODE)) {
+        buffer.position(buffer.position() + 4);
+        int scriptLength = buffer.getInt();
+        if (scriptLength < 0 || scriptLength > buffer.remaining()) {
+          throw new CompoundFileException("Invalid script length " + scriptLength);
+        }
+        int start = buffer.position();
+        return Arrays.copyOfRange(gameData, start, start + scriptLength);
+      }
+
+      if (tag.equals(TAG_END) || length < 4 || length > buffer.remaining()) {
+        break;
+      }
+      buffer.position(buffer.position() + length);
+    }
+    throw new CompoundFileException("No script found in " + GAME_DATA);
+  }
+}
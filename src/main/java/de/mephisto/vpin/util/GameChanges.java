@@ -0,0 +1,49 @@
+package de.mephisto.vpin.util;
+
+import de.mephisto.vpin.GameInfo;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.*;
+
+/**
+ * The games that have been added, changed or removed in the PinUP Popper database since the last read.
+ */
+public class GameChanges {
+  private final List<GameInfo> updated = new ArrayList<>();
+  private final Set<Integer> removed = new HashSet<>();
+  private final Map<Integer, Integer> rowHashes = new HashMap<>();
+
+  /**
+   * The new and the changed games.
+   */
+  @NonNull
+  public List<GameInfo> getUpdated() {
+    return updated;
+  }
+
+  /**
+   * The ids of the games that have been removed from the database or whose VPX file is missing now.
+   */
+  @NonNull
+  public Set<Integer> getRemoved() {
+    return removed;
+  }
+
+  /**
+   * The current row hashes of all games, to be passed to the next read.
+   */
+  @NonNull
+  public Map<Integer, Integer> getRowHashes() {
+    return rowHashes;
+  }
+
+  public boolean isEmpty() {
+    return updated.isEmpty() && removed.isEmpty();
+  }
+
+  void clear() {
+    updated.clear();
+    removed.clear();
+    rowHashes.clear();
+  }
+}
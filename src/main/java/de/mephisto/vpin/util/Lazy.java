@@ -0,0 +1,56 @@
+package de.mephisto.vpin.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe holder for an expensive object that is only created on first use.
+ * Concurrent callers wait for the one creation in progress. If the creation fails,
+ * the exception is passed to the caller and the next call tries again.
+ */
+public class Lazy<T> {
+  private final static Logger LOG = LoggerFactory.getLogger(Lazy.class);
+
+  private final String name;
+  private final Supplier<T> factory;
+  private volatile T value;
+
+  /**
+   * @param name    the name of the object, used for logging
+   * @param factory creates the object, must not return null
+   */
+  public Lazy(@NonNull String name, @NonNull Supplier<T> factory) {
+    this.name = name;
+    this.factory = factory;
+  }
+
+  @NonNull
+  public T get() {
+    T result = value;
+    if (result == null) {
+      synchronized (this) {
+        result = value;
+        if (result == null) {
+          long start = System.currentTimeMillis();
+          result = factory.get();
+          if (result == null) {
+            throw new IllegalStateException("Failed to create " + name + ", the factory returned null.");
+          }
+          value = result;
+          LOG.info("Created " + name + " in " + (System.currentTimeMillis() - start) + "ms");
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if the object has been created already, does not create it.
+   */
+  public boolean isCreated() {
+    return value != null;
+  }
+}
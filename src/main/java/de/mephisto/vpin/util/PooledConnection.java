@@ -0,0 +1,122 @@
+package de.mephisto.vpin.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A connection of the {@link SqliteConnectionPool}, closing it returns it to the pool.
+ * Prepared statements are cached per connection, so frequent queries are parsed and planned only once.
+ */
+public class PooledConnection implements AutoCloseable {
+  private final static Logger LOG = LoggerFactory.getLogger(PooledConnection.class);
+
+  /**
+   * Connections that have been idle for longer than this are checked before they are used again.
+   */
+  private final static long VALIDATION_INTERVAL_MS = 10000;
+
+  private final SqliteConnectionPool pool;
+  private final String url;
+  private final Properties properties;
+
+  private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+  private Connection conn;
+  private long lastUsed;
+  private int generation;
+
+  PooledConnection(@NonNull SqliteConnectionPool pool, @NonNull String url, @NonNull Properties properties) {
+    this.pool = pool;
+    this.url = url;
+    this.properties = properties;
+  }
+
+  void open() throws SQLException {
+    if (conn != null && System.currentTimeMillis() - lastUsed > VALIDATION_INTERVAL_MS && !isValid()) {
+      LOG.warn("Connection to " + url + " is not valid anymore, reconnecting.");
+      disconnect();
+    }
+
+    if (conn == null || conn.isClosed()) {
+      conn = DriverManager.getConnection(url, properties);
+      generation++;
+    }
+  }
+
+  private boolean isValid() {
+    try (Statement statement = conn.createStatement(); ResultSet rs = statement.executeQuery("SELECT 1")) {
+      return rs.next();
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  @NonNull
+  public Connection getConnection() {
+    return conn;
+  }
+
+  /**
+   * Incremented every time the underlying connection has been (re-)opened.
+   */
+  public int getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Returns the cached prepared statement for the given SQL with cleared parameters.
+   * The statement must not be closed by the caller, but its result sets must be.
+   */
+  @NonNull
+  public PreparedStatement prepare(@NonNull String sql) throws SQLException {
+    PreparedStatement statement = statements.get(sql);
+    if (statement == null || statement.isClosed()) {
+      statement = conn.prepareStatement(sql);
+      statements.put(sql, statement);
+    }
+    else {
+      statement.clearParameters();
+    }
+    return statement;
+  }
+
+  /**
+   * Closes the underlying connection, so the next user of this pooled connection will reconnect.
+   * Should be called when the connection has failed.
+   */
+  public void invalidate() {
+    disconnect();
+  }
+
+  void disconnect() {
+    for (PreparedStatement statement : statements.values()) {
+      try {
+        statement.close();
+      } catch (SQLException e) {
+        LOG.error("Error closing statement: " + e.getMessage());
+      }
+    }
+    statements.clear();
+
+    if (conn != null) {
+      try {
+        conn.close();
+      } catch (SQLException e) {
+        LOG.error("Error disconnecting from sqlite: " + e.getMessage());
+      }
+      conn = null;
+    }
+  }
+
+  @Override
+  public void close() {
+    lastUsed = System.currentTimeMillis();
+    pool.release(this);
+  }
+}
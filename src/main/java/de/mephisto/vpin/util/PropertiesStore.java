@@ -6,15 +6,42 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
 import java.util.Properties;
-
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key/value store backed by a properties file.
+ * By default every change rewrites the file. Stores with write-behind enabled coalesce changes
+ * and write them after a delay or once enough changes are pending, batches are written when they end.
+ * The file is always replaced atomically, so a crash never leaves a truncated file behind.
+ */
 public class PropertiesStore {
   private final static Logger LOG = LoggerFactory.getLogger(PropertiesStore.class);
 
+  private final static ScheduledExecutorService FLUSH_EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread t = new Thread(r, "Properties Store Flush");
+    t.setDaemon(true);
+    return t;
+  });
+
   protected final Properties properties = new SortedProperties();
 
   private File propertiesFile;
 
+  private long writeBehindDelay = 0;
+  private int writeBehindMaxChanges = 0;
+  private int pendingChanges = 0;
+  private int batchDepth = 0;
+  private ScheduledFuture<?> scheduledFlush;
+
   public static PropertiesStore createInMemory() {
     return new PropertiesStore();
   }
@@ -127,13 +154,100 @@ public class PropertiesStore {
 
   public void set(String key, String value) {
     properties.setProperty(key, value);
+    changed(1);
+  }
+
+  /**
+   * Sets all given values and writes the store only once.
+   */
+  public void set(Map<String, String> values) {
+    if (values.isEmpty()) {
+      return;
+    }
+    properties.putAll(values);
+    changed(values.size());
+  }
+
+  /**
+   * Coalesces changes and writes them after the given delay or once the given number of changes is pending.
+   * Pending changes are written on shutdown.
+   */
+  public PropertiesStore enableWriteBehind(long delayMs, int maxChanges) {
+    this.writeBehindDelay = delayMs;
+    this.writeBehindMaxChanges = maxChanges;
+    Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "Properties Store Shutdown Flush"));
+    return this;
+  }
+
+  /**
+   * Starts a batch, changes are not written before the outermost batch has ended.
+   */
+  public synchronized void beginBatch() {
+    batchDepth++;
+  }
+
+  public void endBatch() {
+    synchronized (this) {
+      batchDepth = Math.max(0, batchDepth - 1);
+      if (batchDepth > 0) {
+        return;
+      }
+    }
+    flush();
+  }
+
+  /**
+   * Writes all pending changes.
+   */
+  public synchronized void flush() {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    if (pendingChanges == 0) {
+      return;
+    }
+    pendingChanges = 0;
+    save();
+  }
+
+  private synchronized void changed(int count) {
+    pendingChanges += count;
+    if (batchDepth > 0) {
+      return;
+    }
+
+    if (writeBehindDelay <= 0 || pendingChanges >= writeBehindMaxChanges) {
+      flush();
+    }
+    else if (scheduledFlush == null) {
+      scheduledFlush = FLUSH_EXECUTOR.schedule(this::flush, writeBehindDelay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Writes the store to a temporary file first and replaces the properties file with it.
+   */
+  private void save() {
+    if (propertiesFile == null) {
+      return;
+    }
+
+    File tmpFile = new File(propertiesFile.getAbsoluteFile().getParentFile(), propertiesFile.getName() + ".tmp");
     try {
-      if (propertiesFile != null) {
-        FileOutputStream fileOutputStream = new FileOutputStream(propertiesFile);
-        properties.store(fileOutputStream, null);
-        fileOutputStream.close();
+      try (FileOutputStream fileOutputStream = new FileOutputStream(tmpFile)) {
+        synchronized (properties) {
+          properties.store(fileOutputStream, null);
+        }
+        fileOutputStream.getFD().sync();
       }
-    } catch (Exception e) {
+
+      try {
+        Files.move(tmpFile.toPath(), propertiesFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmpFile.toPath(), propertiesFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
       LOG.error("Failed to store data store: " + e.getMessage(), e);
     }
   }
@@ -2,6 +2,12 @@ package de.mephisto.vpin.util;
 
 import java.io.*;
 
+/**
+ * Seeks and reads every single byte of the file.
+ *
+ * @deprecated use the block buffered {@link ReverseLineReader} instead.
+ */
+@Deprecated
 public class ReverseLineInputStream extends InputStream {
 
   RandomAccessFile in;
@@ -62,8 +68,7 @@ public class ReverseLineInputStream extends InputStream {
 
     if (currentPos < currentLineEnd) {
       in.seek(currentPos++);
-      int readByte = in.readByte();
-      return readByte;
+      return in.readByte() & 0xFF;
 
     }
     else if (currentPos < 0) {
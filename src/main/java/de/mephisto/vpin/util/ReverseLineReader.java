@@ -0,0 +1,149 @@
+package de.mephisto.vpin.util;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the lines of a file backwards, starting with the last line.
+ * The file is read in large blocks from the end, so lines are found without a syscall per byte.
+ * Lines that straddle block boundaries are joined, a trailing CR of a CRLF line ending is stripped.
+ */
+public class ReverseLineReader implements Closeable {
+  public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+  private final static byte LF = 0xA;
+  private final static byte CR = 0xD;
+
+  private final FileChannel channel;
+  private final Charset charset;
+  private final int blockSize;
+
+  /**
+   * Holds the file region [windowStart, cursor) that has not been returned yet.
+   */
+  private byte[] window = new byte[0];
+  private long windowStart;
+  private long cursor;
+
+  private int lineOffset;
+  private int lineLength;
+
+  public ReverseLineReader(File file) throws IOException {
+    this(file, DEFAULT_BLOCK_SIZE, Charset.defaultCharset());
+  }
+
+  public ReverseLineReader(File file, int blockSize, Charset charset) throws IOException {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Invalid block size " + blockSize);
+    }
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    this.blockSize = blockSize;
+    this.charset = charset;
+    this.cursor = channel.size();
+    this.windowStart = cursor;
+  }
+
+  /**
+   * Returns the previous line of the file or null if the beginning of the file has been reached.
+   */
+  @Nullable
+  public String readLine() throws IOException {
+    if (!previousLine()) {
+      return null;
+    }
+    return new String(window, lineOffset, lineLength, charset);
+  }
+
+  /**
+   * Moves to the previous line of the file, the bytes of the line can be accessed
+   * via {@link #getLineBuffer()}, {@link #getLineOffset()} and {@link #getLineLength()}
+   * until the next call of this method.
+   *
+   * @return false if the beginning of the file has been reached
+   */
+  public boolean previousLine() throws IOException {
+    if (cursor < 0) {
+      return false;
+    }
+
+    int end = (int) (cursor - windowStart);
+    int index = end - 1;
+    while (true) {
+      while (index >= 0 && window[index] != LF) {
+        index--;
+      }
+
+      if (index >= 0 || windowStart == 0) {
+        break;
+      }
+
+      //no line feed in the current window, prepend the previous block of the file
+      int loaded = prependBlock(end);
+      end += loaded;
+      index = loaded - 1;
+    }
+
+    int lineEnd = end;
+    if (lineEnd > index + 1 && window[lineEnd - 1] == CR) {
+      lineEnd--;
+    }
+
+    lineOffset = index + 1;
+    lineLength = lineEnd - lineOffset;
+    //the line feed itself is the end of the next line, -1 marks the beginning of the file
+    cursor = windowStart + index;
+    return true;
+  }
+
+  public byte[] getLineBuffer() {
+    return window;
+  }
+
+  public int getLineOffset() {
+    return lineOffset;
+  }
+
+  public int getLineLength() {
+    return lineLength;
+  }
+
+  /**
+   * Reads the block in front of the window and keeps the first unread bytes of the window behind it.
+   *
+   * @return the number of bytes that have been loaded
+   */
+  private int prependBlock(int unread) throws IOException {
+    int length = (int) Math.min(blockSize, windowStart);
+    long position = windowStart - length;
+
+    byte[] buffer = window;
+    if (buffer.length < length + unread) {
+      buffer = new byte[Math.max(length + unread, blockSize)];
+    }
+    System.arraycopy(window, 0, buffer, length, unread);
+
+    ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+    while (target.hasRemaining()) {
+      int read = channel.read(target, position + target.position());
+      if (read < 0) {
+        throw new IOException("Unexpected end of file at position " + (position + target.position()));
+      }
+    }
+
+    window = buffer;
+    windowStart = position;
+    return length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
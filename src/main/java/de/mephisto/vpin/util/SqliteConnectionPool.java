@@ -0,0 +1,156 @@
+package de.mephisto.vpin.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteErrorCode;
+
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small pool of long-lived SQLite connections.
+ * Connections are opened lazily, checked before they are handed out after being idle
+ * and re-opened if the check fails, e.g. after the database file has been replaced.
+ */
+public class SqliteConnectionPool {
+  private final static Logger LOG = LoggerFactory.getLogger(SqliteConnectionPool.class);
+
+  private final static long ACQUIRE_TIMEOUT_SECONDS = 30;
+
+  private final String url;
+  private final BlockingQueue<PooledConnection> idle;
+  private final SqliteMetrics metrics = new SqliteMetrics();
+  private final int maxRetries;
+  private final int retryBackoff;
+  private volatile boolean closed;
+
+  public SqliteConnectionPool(@NonNull String url, int size) {
+    this(url, size, new SQLiteConfig(), 0, 0);
+  }
+
+  /**
+   * @param config       the configuration used to open the connections
+   * @param maxRetries   the number of retries of an operation that failed because the database was locked
+   * @param retryBackoff the wait time in ms before the first retry, doubled with every retry
+   */
+  public SqliteConnectionPool(@NonNull String url, int size, @NonNull SQLiteConfig config, int maxRetries, int retryBackoff) {
+    this.url = url;
+    this.maxRetries = maxRetries;
+    this.retryBackoff = retryBackoff;
+    this.idle = new ArrayBlockingQueue<>(size);
+    Properties properties = config.toProperties();
+    for (int i = 0; i < size; i++) {
+      idle.add(new PooledConnection(this, url, properties));
+    }
+  }
+
+  /**
+   * Returns a healthy connection of the pool, it must be closed to give it back.
+   * Waits until a connection becomes available if all are in use.
+   */
+  @NonNull
+  public PooledConnection acquire() throws SQLException {
+    if (closed) {
+      throw new SQLException("Connection pool for " + url + " has been closed.");
+    }
+
+    PooledConnection connection;
+    try {
+      connection = idle.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a connection to " + url);
+    }
+    if (connection == null) {
+      throw new SQLException("No connection to " + url + " available after " + ACQUIRE_TIMEOUT_SECONDS + " seconds.");
+    }
+
+    try {
+      connection.open();
+    } catch (SQLException e) {
+      idle.add(connection);
+      throw e;
+    }
+    return connection;
+  }
+
+  /**
+   * Runs the operation with a connection of the pool.
+   * If the database is locked by another process, e.g. PinUP Popper writing to it,
+   * the operation is retried with an exponential backoff.
+   */
+  public <T> T execute(@NonNull SqlOperation<T> operation) throws SQLException {
+    metrics.operation();
+    int attempt = 0;
+    while (true) {
+      long start = System.currentTimeMillis();
+      try (PooledConnection connection = acquire()) {
+        return operation.execute(connection);
+      } catch (SQLException e) {
+        if (!isBusy(e)) {
+          throw e;
+        }
+
+        metrics.busy(System.currentTimeMillis() - start);
+        if (attempt >= maxRetries) {
+          metrics.failure();
+          LOG.warn("Database " + url + " is still locked after " + attempt + " retries (" + metrics + ")");
+          throw e;
+        }
+
+        long backoff = (long) retryBackoff << attempt;
+        attempt++;
+        metrics.retry(backoff);
+        LOG.info("Database " + url + " is locked, retry " + attempt + " of " + maxRetries + " in " + backoff + "ms");
+        try {
+          Thread.sleep(backoff);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  static boolean isBusy(@NonNull SQLException e) {
+    int code = e.getErrorCode() & 0xFF;
+    return code == SQLiteErrorCode.SQLITE_BUSY.code || code == SQLiteErrorCode.SQLITE_LOCKED.code;
+  }
+
+  @NonNull
+  public SqliteMetrics getMetrics() {
+    return metrics;
+  }
+
+  void release(@NonNull PooledConnection connection) {
+    if (closed) {
+      connection.disconnect();
+      return;
+    }
+    idle.add(connection);
+  }
+
+  /**
+   * Closes the idle connections, connections that are still in use are closed when they are released.
+   */
+  public void close() {
+    closed = true;
+    PooledConnection connection;
+    while ((connection = idle.poll()) != null) {
+      connection.disconnect();
+    }
+    LOG.info("Closed connection pool for " + url + " (" + metrics + ")");
+  }
+
+  /**
+   * A database operation that is run with a pooled connection.
+   */
+  public interface SqlOperation<T> {
+    T execute(@NonNull PooledConnection connection) throws SQLException;
+  }
+}
@@ -1,21 +1,29 @@
 package de.mephisto.vpin.util;
 
 import de.mephisto.vpin.GameInfo;
+import de.mephisto.vpin.GameSummary;
 import de.mephisto.vpin.VPinService;
 import de.mephisto.vpin.popper.PinUPControl;
+import de.mephisto.vpin.popper.Playlist;
+import de.mephisto.vpin.popper.Playlists;
+import de.mephisto.vpin.popper.PopperScripts;
+import de.mephisto.vpin.roms.GameScan;
 import de.mephisto.vpin.roms.RomManager;
+import de.mephisto.vpin.roms.RomScanJob;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
 
 import java.io.File;
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class SqliteConnector {
   private final static Logger LOG = LoggerFactory.getLogger(SqliteConnector.class);
@@ -23,278 +31,576 @@ public class SqliteConnector {
   public static final String POST_SCRIPT = "PostScript";
   public static final String LAUNCH_SCRIPT = "LaunchScript";
   public static final String ROM = "ROM";
+
+  private final static int EMU_ID_VPX = 1;
+
+  /**
+   * The games are read together with their play stats, so loading the catalog is a single query.
+   * Only the columns a {@link GameInfo} is created from are selected, the Games table has many more
+   * columns like notes, tags and descriptions which are never used.
+   */
+  final static String SELECT_GAMES = "SELECT Games.GameID, Games.GameFileName, Games.GameDisplay, " +
+      "GamesStats.NumberPlays AS StatsNumberPlays, GamesStats.LastPlayed AS StatsLastPlayed " +
+      "FROM Games LEFT JOIN GamesStats ON GamesStats.GameID = Games.GameID";
+
+  /**
+   * The columns of a {@link GameSummary}.
+   */
+  final static String SELECT_GAME_SUMMARIES = "SELECT GameID, GameFileName, GameDisplay FROM Games WHERE EMUID = ?";
+
+  /**
+   * SQLite allows concurrent readers, but only one writer.
+   */
+  private final static int READ_CONNECTIONS = 3;
+
+  /**
+   * The number of queued async operations, when the queue is full further operations fail right away.
+   */
+  private final static int ASYNC_QUEUE_SIZE = 64;
+
   private final String dbFilePath;
 
-  private Connection conn;
+  private final SqliteConnectionPool readPool;
+  private final SqliteConnectionPool writePool;
+  private final SqliteConnectionPool versionPool;
+  private final ThreadPoolExecutor dbExecutor;
+  private final SqliteMirror mirror;
   private RomManager romManager;
 
+  private Playlists playlists;
+  private long playlistsVersion;
+
   public SqliteConnector(RomManager romManager) {
-    this(SystemInfo.getInstance().getPinUPDatabaseFile());
+    this(SystemInfo.getInstance().getPinUPDatabaseFile(), SqliteSettings.load(PropertiesStore.create("env")));
     this.romManager = romManager;
   }
 
   public SqliteConnector(File file) {
-    dbFilePath = file.getAbsolutePath().replaceAll("\\\\", "/");
+    this(file, new SqliteSettings());
   }
 
   /**
-   * Connect to a database
+   * The reads use read-only connections, so PinUP Popper is never blocked by them.
+   * All writes go through a single connection, so they are serialized.
    */
-  private void connect() {
-    try {
-      String url = "jdbc:sqlite:" + dbFilePath;
-      conn = DriverManager.getConnection(url);
-    } catch (SQLException e) {
-      LOG.error("Failed to connect to sqlite: " + e.getMessage(), e);
+  public SqliteConnector(File file, SqliteSettings settings) {
+    dbFilePath = file.getAbsolutePath().replaceAll("\\\\", "/");
+    String url = "jdbc:sqlite:" + dbFilePath;
+    this.readPool = new SqliteConnectionPool(url, READ_CONNECTIONS, settings.toReadConfig(), settings.getMaxRetries(), settings.getRetryBackoff());
+    this.writePool = new SqliteConnectionPool(url, 1, settings.toWriteConfig(), settings.getMaxRetries(), settings.getRetryBackoff());
+
+    //data_version is per connection, so it is always read from the same one, which must not share the cache of the readers
+    SQLiteConfig versionConfig = settings.toReadConfig();
+    versionConfig.setSharedCache(false);
+    this.versionPool = new SqliteConnectionPool(url, 1, versionConfig, settings.getMaxRetries(), settings.getRetryBackoff());
+
+    //one worker per read connection, more would only wait for a connection
+    AtomicInteger workerCount = new AtomicInteger();
+    this.dbExecutor = new ThreadPoolExecutor(READ_CONNECTIONS, READ_CONNECTIONS, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(ASYNC_QUEUE_SIZE), r -> {
+      Thread t = new Thread(r, "SQLite Worker " + workerCount.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    }, new ThreadPoolExecutor.AbortPolicy());
+    this.dbExecutor.allowCoreThreadTimeOut(true);
+
+    this.mirror = settings.isMirror() ? new SqliteMirror(dbFilePath, READ_CONNECTIONS, settings.getMirrorCheckInterval(), this::getDataVersion) : null;
+  }
+
+  public void close() {
+    this.dbExecutor.shutdown();
+    if (this.mirror != null) {
+      this.mirror.close();
     }
+    this.readPool.close();
+    this.writePool.close();
+    this.versionPool.close();
+  }
+
+  @NonNull
+  public SqliteMetrics getReadMetrics() {
+    return readPool.getMetrics();
+  }
+
+  @NonNull
+  public SqliteMetrics getWriteMetrics() {
+    return writePool.getMetrics();
+  }
+
+  /**
+   * Runs the read operation on the in-memory copy of the database if enabled, otherwise on the database file.
+   */
+  private <T> T read(@NonNull SqliteConnectionPool.SqlOperation<T> operation) throws SQLException {
+    return read(mirror != null ? mirror.getPool() : null, operation);
+  }
+
+  /**
+   * Like {@link #read(SqliteConnectionPool.SqlOperation)}, but the in-memory copy is only used if it is
+   * at the given data version, so the result can be cached under that version.
+   */
+  private <T> T read(long version, @NonNull SqliteConnectionPool.SqlOperation<T> operation) throws SQLException {
+    return read(mirror != null ? mirror.getPool(version) : null, operation);
   }
 
-  private void disconnect() {
-    if (this.conn != null) {
+  private <T> T read(@Nullable SqliteConnectionPool mirrorPool, @NonNull SqliteConnectionPool.SqlOperation<T> operation) throws SQLException {
+    if (mirrorPool != null) {
       try {
-        this.conn.close();
+        return mirrorPool.execute(operation);
       } catch (SQLException e) {
-        LOG.error("Error disconnecting from sqlite: " + e.getMessage());
+        //the copy may have been replaced in the meantime, the file is always up-to-date
+        LOG.warn("Failed to read from the in-memory copy, reading from " + dbFilePath + ": " + e.getMessage());
       }
     }
+    return readPool.execute(operation);
+  }
+
+  private <T> T write(@NonNull SqliteConnectionPool.SqlOperation<T> operation) throws SQLException {
+    try {
+      return writePool.execute(operation);
+    } finally {
+      if (mirror != null) {
+        mirror.invalidate();
+      }
+    }
+  }
+
+  /**
+   * Runs the given database work on the DB executor, so the calling thread is not blocked.
+   * The returned future fails if the queue of the executor is full or the connector has been closed.
+   */
+  @NonNull
+  public <T> CompletableFuture<T> supplyAsync(@NonNull Supplier<T> query) {
+    try {
+      return CompletableFuture.supplyAsync(query, dbExecutor);
+    } catch (RejectedExecutionException e) {
+      CompletableFuture<T> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+  }
+
+  @NonNull
+  public CompletableFuture<GameInfo> getGameAsync(@NonNull VPinService service, int id) {
+    return supplyAsync(() -> getGame(service, id));
+  }
+
+  @NonNull
+  public CompletableFuture<GameInfo> getGameByFilenameAsync(@NonNull VPinService service, @NonNull String filename) {
+    return supplyAsync(() -> getGameByFilename(service, filename));
+  }
+
+  @NonNull
+  public CompletableFuture<GameInfo> getGameByNameAsync(@NonNull VPinService service, @NonNull String table) {
+    return supplyAsync(() -> getGameByName(service, table));
+  }
+
+  @NonNull
+  public CompletableFuture<List<GameInfo>> getGamesAsync(@NonNull VPinService service) {
+    return supplyAsync(() -> getGames(service));
+  }
+
+  @NonNull
+  public CompletableFuture<List<GameSummary>> getGameSummariesAsync() {
+    return supplyAsync(this::getGameSummaries);
+  }
+
+  @NonNull
+  public CompletableFuture<Playlists> getPlaylistsAsync() {
+    return supplyAsync(this::getPlaylists);
   }
 
   @Nullable
   public GameInfo getGame(@NonNull VPinService service, int id) {
-    this.connect();
-    GameInfo info = null;
     try {
-      Statement statement = conn.createStatement();
-      ResultSet rs = statement.executeQuery("SELECT * FROM Games where GameID = " + id + ";");
-      while (rs.next()) {
-        info = createGameInfo(service, rs);
-      }
-      rs.close();
-      statement.close();
+      return read(connection -> {
+        PreparedStatement statement = connection.prepare(SELECT_GAMES + " WHERE Games.GameID = ?");
+        statement.setInt(1, id);
+        return readGame(service, statement);
+      });
     } catch (SQLException e) {
       LOG.error("Failed to get game for id '" + id + "': " + e.getMessage(), e);
-    } finally {
-      this.disconnect();
     }
-    return info;
+    return null;
   }
 
   @Nullable
   public GameInfo getGameByFilename(@NonNull VPinService service, String filename) {
-    this.connect();
-    GameInfo info = null;
     try {
-      String gameName = filename.replaceAll("'", "''");
-      Statement statement = conn.createStatement();
-      ResultSet rs = statement.executeQuery("SELECT * FROM Games where GameFileName = '" + gameName + "';");
-      while (rs.next()) {
-        info = createGameInfo(service, rs);
-      }
-
-      rs.close();
-      statement.close();
+      return read(connection -> {
+        PreparedStatement statement = connection.prepare(SELECT_GAMES + " WHERE Games.GameFileName = ?");
+        statement.setString(1, filename);
+        return readGame(service, statement);
+      });
     } catch (SQLException e) {
       LOG.error("Failed to read game by filename '" + filename + "': " + e.getMessage(), e);
-    } finally {
-      this.disconnect();
     }
-    return info;
+    return null;
   }
 
   @Nullable
   public GameInfo getGameByName(@NonNull VPinService service, String table) {
-    this.connect();
-    GameInfo info = null;
     try {
-      String gameName = table.replaceAll("'", "''");
-      Statement statement = conn.createStatement();
-      ResultSet rs = statement.executeQuery("SELECT * FROM Games where GameDisplay = '" + gameName + "';");
+      return read(connection -> {
+        PreparedStatement statement = connection.prepare(SELECT_GAMES + " WHERE Games.GameDisplay = ?");
+        statement.setString(1, table);
+        return readGame(service, statement);
+      });
+    } catch (SQLException e) {
+      LOG.error("Failed to get game by name '" + table + "': " + e.getMessage(), e);
+    }
+    return null;
+  }
+
+  @Nullable
+  private GameInfo readGame(@NonNull VPinService service, @NonNull PreparedStatement statement) throws SQLException {
+    GameInfo info = null;
+    try (ResultSet rs = statement.executeQuery()) {
       while (rs.next()) {
         info = createGameInfo(service, rs);
       }
+    }
+    return info;
+  }
 
-      rs.close();
-      statement.close();
+  /**
+   * Returns the summaries of all VPX games, sorted by their display name like the {@link GameInfo} lists:
+   * case-sensitive, games without a display name come last.
+   */
+  @NonNull
+  public List<GameSummary> getGameSummaries() {
+    try {
+      return read(connection -> {
+        List<GameSummary> results = new ArrayList<>();
+        PreparedStatement statement = connection.prepare(SELECT_GAME_SUMMARIES + " ORDER BY GameDisplay IS NULL, GameDisplay");
+        statement.setInt(1, EMU_ID_VPX);
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next()) {
+            results.add(createGameSummary(rs));
+          }
+        }
+        return results;
+      });
     } catch (SQLException e) {
-      LOG.error("Failed to get game by name '" + table + "': " + e.getMessage(), e);
-    } finally {
-      this.disconnect();
+      LOG.error("Failed to get game summaries: " + e.getMessage(), e);
     }
-    return info;
+    return Collections.emptyList();
   }
 
   @Nullable
-  public PinUPControl getFunction(@NonNull String description) {
-    PinUPControl f = null;
-    this.connect();
+  public GameSummary getGameSummary(int id) {
     try {
-      Statement statement = conn.createStatement();
-      description = description.replaceAll("'", "''");
-      ResultSet rs = statement.executeQuery("SELECT * FROM PinUPFunctions WHERE Descript = '" + description + "';");
-      while (rs.next()) {
-        f = new PinUPControl();
-        f.setActive(rs.getInt("Active") == 1);
-        f.setDescription(rs.getString("Descript"));
-        f.setCtrlKey(rs.getInt("CntrlCodes"));
-        f.setId(rs.getInt("uniqueID"));
-        break;
-      }
+      return read(connection -> {
+        PreparedStatement statement = connection.prepare(SELECT_GAME_SUMMARIES + " AND GameID = ?");
+        statement.setInt(1, EMU_ID_VPX);
+        statement.setInt(2, id);
+        try (ResultSet rs = statement.executeQuery()) {
+          return rs.next() ? createGameSummary(rs) : null;
+        }
+      });
+    } catch (SQLException e) {
+      LOG.error("Failed to get game summary for id '" + id + "': " + e.getMessage(), e);
+    }
+    return null;
+  }
 
-      rs.close();
-      statement.close();
+  @NonNull
+  private static GameSummary createGameSummary(@NonNull ResultSet rs) throws SQLException {
+    return new GameSummary(rs.getInt("GameID"), rs.getString("GameFileName"), rs.getString("GameDisplay"));
+  }
+
+  @Nullable
+  public PinUPControl getFunction(@NonNull String description) {
+    try {
+      return read(connection -> {
+        PreparedStatement statement = connection.prepare("SELECT * FROM PinUPFunctions WHERE Descript = ?");
+        statement.setString(1, description);
+        try (ResultSet rs = statement.executeQuery()) {
+          return rs.next() ? createControl(rs) : null;
+        }
+      });
     } catch (SQLException e) {
       LOG.error("Failed to get function: " + e.getMessage(), e);
-    } finally {
-      this.disconnect();
     }
-    return f;
+    return null;
   }
 
   @NonNull
   public List<PinUPControl> getControls() {
-    this.connect();
-    List<PinUPControl> results = new ArrayList<>();
     try {
-      Statement statement = conn.createStatement();
-      ResultSet rs = statement.executeQuery("SELECT * FROM PinUPFunctions;");
-      while (rs.next()) {
-        PinUPControl f = new PinUPControl();
-        f.setActive(rs.getInt("Active") == 1);
-        f.setDescription(rs.getString("Descript"));
-        f.setCtrlKey(rs.getInt("CntrlCodes"));
-        f.setId(rs.getInt("uniqueID"));
-        results.add(f);
-      }
-
-      rs.close();
-      statement.close();
+      return read(connection -> {
+        List<PinUPControl> results = new ArrayList<>();
+        PreparedStatement statement = connection.prepare("SELECT * FROM PinUPFunctions");
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next()) {
+            results.add(createControl(rs));
+          }
+        }
+        return results;
+      });
     } catch (SQLException e) {
       LOG.error("Failed to functions: " + e.getMessage(), e);
-    } finally {
-      this.disconnect();
     }
-    return results;
+    return new ArrayList<>();
   }
 
   public int getGameCount() {
-    int count = 0;
-    this.connect();
     try {
-      Statement statement = conn.createStatement();
-      ResultSet rs = statement.executeQuery("SELECT count(*) as count FROM Games WHERE EMUID = 1;");
-      while (rs.next()) {
-        count = rs.getInt("count");
-      }
-      rs.close();
-      statement.close();
+      return read(connection -> {
+        PreparedStatement statement = connection.prepare("SELECT count(*) as count FROM Games WHERE EMUID = ?");
+        statement.setInt(1, EMU_ID_VPX);
+        try (ResultSet rs = statement.executeQuery()) {
+          return rs.next() ? rs.getInt("count") : 0;
+        }
+      });
     } catch (SQLException e) {
       LOG.error("Failed to read game count: " + e.getMessage(), e);
-    } finally {
-      this.disconnect();
     }
-    return count;
+    return 0;
   }
 
   @NonNull
   public List<GameInfo> getGames(@NonNull VPinService service) {
-    this.connect();
     List<GameInfo> results = new ArrayList<>();
+    List<GameInfo> unscanned = new ArrayList<>();
     try {
-      Statement statement = conn.createStatement();
-      ResultSet rs = statement.executeQuery("SELECT * FROM Games WHERE EMUID = 1;");
-      while (rs.next()) {
-        GameInfo info = createGameInfo(service, rs);
-        if (info != null) {
-          results.add(info);
+      read(connection -> {
+        results.clear();
+        unscanned.clear();
+        PreparedStatement statement = connection.prepare(SELECT_GAMES + " WHERE Games.EMUID = ?");
+        statement.setInt(1, EMU_ID_VPX);
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next()) {
+            GameInfo info = createGameInfo(service, rs, unscanned);
+            if (info != null) {
+              results.add(info);
+            }
+          }
         }
-      }
-      rs.close();
-      statement.close();
+        return results;
+      });
     } catch (SQLException e) {
       LOG.error("Failed to get games: " + e.getMessage(), e);
-    } finally {
-      this.disconnect();
     }
 
+    awaitScan(results, unscanned);
     results.sort(Comparator.comparing(GameInfo::getGameDisplayName));
     return results;
   }
 
+  /**
+   * Scans the given games of the list and replaces them with their scanned copies.
+   */
+  private void awaitScan(@NonNull List<GameInfo> games, @NonNull List<GameInfo> unscanned) {
+    if (!unscanned.isEmpty()) {
+      try {
+        RomScanJob job = romManager.scanRoms(unscanned, false, null);
+        job.await();
+        Map<Integer, GameInfo> scanned = new HashMap<>();
+        for (GameInfo game : job.getScannedGames()) {
+          scanned.put(game.getId(), game);
+        }
+        games.replaceAll(game -> scanned.getOrDefault(game.getId(), game));
+      } catch (InterruptedException e) {
+        LOG.error("Interrupted ROM scan of " + unscanned.size() + " games.");
+      }
+    }
+  }
+
   @NonNull
   public List<Integer> getGameIdsFromPlaylists() {
-    List<Integer> result = new ArrayList<>();
-    connect();
-    try {
-      Statement statement = conn.createStatement();
-      ResultSet rs = statement.executeQuery("SELECT * FROM PlayListDetails;");
+    return getPlaylists().getGameIds();
+  }
 
-      while (rs.next()) {
-        int gameId = rs.getInt("GameID");
-        result.add(gameId);
+  /**
+   * Returns the playlists of PinUP Popper, they are only read again after the database has been changed.
+   * If they can't be read, the previous playlists are returned and the next call tries again.
+   */
+  @NonNull
+  public Playlists getPlaylists() {
+    long version = getDataVersion();
+    synchronized (this) {
+      if (playlists == null || version != playlistsVersion) {
+        Playlists loaded = loadPlaylists(version);
+        if (loaded == null) {
+          return playlists != null ? playlists : new Playlists(new ArrayList<>());
+        }
+        playlists = loaded;
+        playlistsVersion = version;
       }
+      return playlists;
+    }
+  }
+
+  @Nullable
+  private Playlists loadPlaylists(long version) {
+    try {
+      return read(version, connection -> {
+        List<Playlist> result = new ArrayList<>();
+        PreparedStatement statement = connection.prepare("SELECT PlayLists.PlayListID, PlayLists.PlayName, PlayListDetails.GameID " +
+            "FROM PlayLists LEFT JOIN PlayListDetails ON PlayListDetails.PlayListID = PlayLists.PlayListID " +
+            "ORDER BY PlayLists.PlayListID, PlayListDetails.rowid");
+        try (ResultSet rs = statement.executeQuery()) {
+          int currentId = -1;
+          String currentName = null;
+          List<Integer> gameIds = null;
+          while (rs.next()) {
+            int id = rs.getInt("PlayListID");
+            if (gameIds == null || id != currentId) {
+              if (gameIds != null) {
+                result.add(new Playlist(currentId, currentName, gameIds));
+              }
+              currentId = id;
+              currentName = rs.getString("PlayName");
+              gameIds = new ArrayList<>();
+            }
+
+            int gameId = rs.getInt("GameID");
+            if (!rs.wasNull()) {
+              gameIds.add(gameId);
+            }
+          }
+          if (gameIds != null) {
+            result.add(new Playlist(currentId, currentName, gameIds));
+          }
+        }
+        return new Playlists(result);
+      });
     } catch (SQLException e) {
       LOG.error("Failed to read playlists: " + e.getMessage(), e);
-    } finally {
-      disconnect();
     }
-    return result;
+    return null;
+  }
+
+  /**
+   * Returns a value that changes whenever a change has been committed to the database, by PinUP Popper or by us.
+   * This is a single pragma call without any I/O, SQLite keeps the version in memory.
+   */
+  public long getDataVersion() {
+    try {
+      return versionPool.execute(connection -> {
+        PreparedStatement statement = connection.prepare("PRAGMA data_version");
+        try (ResultSet rs = statement.executeQuery()) {
+          rs.next();
+          //the version is only comparable for the same connection
+          return ((long) connection.getGeneration() << 32) | rs.getInt(1);
+        }
+      });
+    } catch (SQLException e) {
+      LOG.error("Failed to read data version: " + e.getMessage(), e);
+    }
+
+    //use the file stamp instead, SQLite updates the database file or its write-ahead log with every commit
+    File file = new File(dbFilePath);
+    File wal = new File(dbFilePath + "-wal");
+    return -(file.lastModified() * 31 + file.length() + wal.lastModified());
+  }
+
+  /**
+   * Reads the rows of all games, but creates {@link GameInfo} objects only for the rows that are new or have changed.
+   *
+   * @param rowHashes the row hashes of the games that are known by the caller
+   * @param version   the data version the caller has read before, the rows are read at this version or later
+   * @return the changes or null if the games could not be read, the caller should keep its games then
+   */
+  @Nullable
+  public GameChanges getGameChanges(@NonNull VPinService service, @NonNull Map<Integer, Integer> rowHashes, long version) {
+    GameChanges changes = new GameChanges();
+    List<GameInfo> unscanned = new ArrayList<>();
+    try {
+      read(version, connection -> {
+        changes.clear();
+        unscanned.clear();
+        PreparedStatement statement = connection.prepare(SELECT_GAMES + " WHERE Games.EMUID = ?");
+        statement.setInt(1, EMU_ID_VPX);
+        try (ResultSet rs = statement.executeQuery()) {
+          while (rs.next()) {
+            int id = rs.getInt("GameID");
+            int hash = hashRow(rs);
+            changes.getRowHashes().put(id, hash);
+
+            Integer knownHash = rowHashes.get(id);
+            if (knownHash == null || knownHash != hash) {
+              GameInfo info = createGameInfo(service, rs, unscanned);
+              if (info != null) {
+                changes.getUpdated().add(info);
+              }
+              else {
+                //a game without its VPX file is removed below, without the row hash it is created again once the file is back
+                changes.getRowHashes().remove(id);
+              }
+            }
+          }
+        }
+        return changes;
+      });
+    } catch (SQLException e) {
+      LOG.error("Failed to get game changes: " + e.getMessage(), e);
+      return null;
+    }
+
+    for (Integer id : rowHashes.keySet()) {
+      if (!changes.getRowHashes().containsKey(id)) {
+        changes.getRemoved().add(id);
+      }
+    }
+    awaitScan(changes.getUpdated(), unscanned);
+    return changes;
+  }
+
+  /**
+   * Hashes the columns a {@link GameInfo} is created from.
+   */
+  private static int hashRow(@NonNull ResultSet rs) throws SQLException {
+    return Objects.hash(rs.getString("GameFileName"), rs.getString("GameDisplay"),
+        rs.getInt("StatsNumberPlays"), rs.getString("StatsLastPlayed"));
   }
 
   @Nullable
   public String getEmulatorStartupScript(@NonNull String emuName) {
-    String script = null;
-    this.connect();
     try {
-      emuName = emuName.replaceAll("'", "''");
-      Statement statement = conn.createStatement();
-      ResultSet rs = statement.executeQuery("SELECT * FROM Emulators where EmuName = '" + emuName + "';");
-      rs.next();
-      script = rs.getString(LAUNCH_SCRIPT);
-      rs.close();
-      statement.close();
+      return getEmulatorScript(emuName, LAUNCH_SCRIPT);
     } catch (SQLException e) {
       LOG.error("Failed to read startup script or " + emuName + ": " + e.getMessage(), e);
-    } finally {
-      this.disconnect();
     }
-    return script;
+    return null;
   }
 
   @Nullable
   public String getEmulatorExitScript(@NonNull String emuName) {
-    String script = null;
-    this.connect();
     try {
-      emuName = emuName.replaceAll("'", "''");
-      Statement statement = conn.createStatement();
-      ResultSet rs = statement.executeQuery("SELECT * FROM Emulators where EmuName = '" + emuName + "';");
-      rs.next();
-      script = rs.getString(POST_SCRIPT);
-      rs.close();
-      statement.close();
+      return getEmulatorScript(emuName, POST_SCRIPT);
     } catch (SQLException e) {
       LOG.error("Failed to read exit script or " + emuName + ": " + e.getMessage(), e);
-    } finally {
-      this.disconnect();
     }
-    return script;
+    return null;
+  }
+
+  @Nullable
+  private String getEmulatorScript(@NonNull String emuName, @NonNull String scriptName) throws SQLException {
+    return read(connection -> {
+      PreparedStatement statement = connection.prepare("SELECT " + toScriptColumn(scriptName) + " FROM Emulators WHERE EmuName = ?");
+      statement.setString(1, emuName);
+      try (ResultSet rs = statement.executeQuery()) {
+        if (!rs.next()) {
+          throw new SQLException("No emulator '" + emuName + "' found.");
+        }
+        return rs.getString(1);
+      }
+    });
   }
 
   @NonNull
   public String getStartupScript() {
     String script = null;
-    this.connect();
     try {
-      Statement statement = conn.createStatement();
-      ResultSet rs = statement.executeQuery("SELECT * FROM GlobalSettings;");
-      rs.next();
-      script = rs.getString("StartupBatch");
-      rs.close();
-      statement.close();
+      script = read(connection -> {
+        PreparedStatement statement = connection.prepare("SELECT StartupBatch FROM GlobalSettings");
+        try (ResultSet rs = statement.executeQuery()) {
+          return rs.next() ? rs.getString("StartupBatch") : null;
+        }
+      });
     } catch (SQLException e) {
       LOG.error("Failed to read startup script: " + e.getMessage(), e);
-    } finally {
-      this.disconnect();
     }
 
     if(script == null) {
@@ -304,53 +610,148 @@ public class SqliteConnector {
   }
 
   public void updateStartupScript(@NonNull String content) {
-    this.connect();
     try {
-      PreparedStatement preparedStatement = conn.prepareStatement("UPDATE GlobalSettings SET 'StartupBatch'=?");
-      preparedStatement.setString(1, content);
-      preparedStatement.executeUpdate();
-      preparedStatement.close();
+      write(connection -> {
+        PreparedStatement preparedStatement = connection.prepare("UPDATE GlobalSettings SET StartupBatch = ?");
+        preparedStatement.setString(1, content);
+        return preparedStatement.executeUpdate();
+      });
       LOG.info("Update of startup script successful.");
     } catch (Exception e) {
       LOG.error("Failed to update startup script script:" + e.getMessage(), e);
-    } finally {
-      this.disconnect();
     }
   }
 
   public void updateScript(@NonNull String emuName, @NonNull String scriptName, @NonNull String content) {
-    this.connect();
-    String sql = "UPDATE Emulators SET '" + scriptName + "'='" + content + "' WHERE EmuName = '" + emuName + "';";
     try {
-      Statement stmt = conn.createStatement();
-      stmt.executeUpdate(sql);
-      stmt.close();
+      write(connection -> {
+        PreparedStatement statement = connection.prepare("UPDATE Emulators SET " + toScriptColumn(scriptName) + " = ? WHERE EmuName = ?");
+        statement.setString(1, content);
+        statement.setString(2, emuName);
+        return statement.executeUpdate();
+      });
       LOG.info("Update of " + scriptName + " successful.");
     } catch (Exception e) {
-      LOG.error("Failed to update script script " + scriptName + " [" + sql + "]: " + e.getMessage(), e);
-    } finally {
-      this.disconnect();
+      LOG.error("Failed to update script script " + scriptName + " of " + emuName + ": " + e.getMessage(), e);
     }
   }
 
-  private void loadStats(@NonNull GameInfo game) {
+  /**
+   * Reads the startup script and the scripts of all emulators on the same connection.
+   * The startup script is null if there are no global settings.
+   */
+  @NonNull
+  public PopperScripts getScripts() {
+    PopperScripts scripts = new PopperScripts();
     try {
-      Statement statement = conn.createStatement();
-      ResultSet rs = statement.executeQuery("SELECT * FROM GamesStats where GameID = " + game.getId() + ";");
-      while (rs.next()) {
-        int numberPlays = rs.getInt("NumberPlays");
-        Date lastPlayed = rs.getDate("LastPlayed");
+      read(connection -> {
+        PreparedStatement settings = connection.prepare("SELECT StartupBatch FROM GlobalSettings");
+        try (ResultSet rs = settings.executeQuery()) {
+          if (rs.next()) {
+            scripts.setStartupScript(StringUtils.defaultString(rs.getString("StartupBatch")));
+          }
+        }
 
-        game.setLastPlayed(lastPlayed);
-        game.setNumberPlays(numberPlays);
-      }
+        PreparedStatement emulators = connection.prepare("SELECT EmuName, " + LAUNCH_SCRIPT + ", " + POST_SCRIPT + " FROM Emulators");
+        try (ResultSet rs = emulators.executeQuery()) {
+          while (rs.next()) {
+            String emuName = rs.getString("EmuName");
+            scripts.setLaunchScript(emuName, StringUtils.defaultString(rs.getString(LAUNCH_SCRIPT)));
+            scripts.setExitScript(emuName, StringUtils.defaultString(rs.getString(POST_SCRIPT)));
+          }
+        }
+        return scripts;
+      });
+    } catch (SQLException e) {
+      LOG.error("Failed to read scripts: " + e.getMessage(), e);
+    }
+    return scripts;
+  }
+
+  /**
+   * Writes all scripts that are set in the given changes in a single transaction, so either all or none are updated.
+   */
+  public boolean updateScripts(@NonNull PopperScripts changes) {
+    if (changes.isEmpty()) {
+      return true;
+    }
+
+    try {
+      write(connection -> {
+        Connection conn = connection.getConnection();
+        conn.setAutoCommit(false);
+        try {
+          if (changes.getStartupScript() != null) {
+            PreparedStatement statement = connection.prepare("UPDATE GlobalSettings SET StartupBatch = ?");
+            statement.setString(1, changes.getStartupScript());
+            statement.executeUpdate();
+          }
+
+          PreparedStatement launch = connection.prepare("UPDATE Emulators SET " + LAUNCH_SCRIPT + " = ? WHERE EmuName = ?");
+          PreparedStatement exit = connection.prepare("UPDATE Emulators SET " + POST_SCRIPT + " = ? WHERE EmuName = ?");
+          //the cached statements may still hold the batch of a failed attempt
+          launch.clearBatch();
+          exit.clearBatch();
+          for (String emuName : changes.getEmulatorNames()) {
+            addScriptUpdate(launch, emuName, changes.getLaunchScript(emuName));
+            addScriptUpdate(exit, emuName, changes.getExitScript(emuName));
+          }
+          launch.executeBatch();
+          exit.executeBatch();
+          conn.commit();
+        } catch (SQLException e) {
+          conn.rollback();
+          throw e;
+        } finally {
+          conn.setAutoCommit(true);
+        }
+        return null;
+      });
+      LOG.info("Update of scripts successful.");
+      return true;
     } catch (SQLException e) {
-      LOG.error("Failed to read game info: " + e.getMessage(), e);
+      LOG.error("Failed to update scripts: " + e.getMessage(), e);
+    }
+    return false;
+  }
+
+  private static void addScriptUpdate(@NonNull PreparedStatement statement, @NonNull String emuName, @Nullable String script) throws SQLException {
+    if (script != null) {
+      statement.setString(1, script);
+      statement.setString(2, emuName);
+      statement.addBatch();
     }
   }
 
+  /**
+   * Column names can't be passed as statement parameters, so only the known script columns are accepted.
+   */
+  private static String toScriptColumn(@NonNull String scriptName) {
+    if (!scriptName.equals(LAUNCH_SCRIPT) && !scriptName.equals(POST_SCRIPT)) {
+      throw new IllegalArgumentException("Invalid emulator script column '" + scriptName + "'");
+    }
+    return scriptName;
+  }
+
+  private static PinUPControl createControl(@NonNull ResultSet rs) throws SQLException {
+    PinUPControl f = new PinUPControl();
+    f.setActive(rs.getInt("Active") == 1);
+    f.setDescription(rs.getString("Descript"));
+    f.setCtrlKey(rs.getInt("CntrlCodes"));
+    f.setId(rs.getInt("uniqueID"));
+    return f;
+  }
+
   @Nullable
   private GameInfo createGameInfo(@NonNull VPinService service, @NonNull ResultSet rs) throws SQLException {
+    return createGameInfo(service, rs, null);
+  }
+
+  /**
+   * @param unscanned if set, games that have not been scanned yet are collected here instead of being scanned inline
+   */
+  @Nullable
+  private GameInfo createGameInfo(@NonNull VPinService service, @NonNull ResultSet rs, @Nullable List<GameInfo> unscanned) throws SQLException {
     GameInfo info = new GameInfo(service);
 
     int id = rs.getInt("GameID");
@@ -373,22 +774,29 @@ public class SqliteConnector {
     info.setGameFile(vpxFile);
 
 
-    String rom = romManager.getRomName(id);
+    GameScan gameScan = romManager.getGameScan(id);
     File romFile = null;
-    if (!StringUtils.isEmpty(rom)) {
-      romFile = new File(SystemInfo.getInstance().getMameRomFolder(), rom + ".zip");
+    boolean scan = service.isHeadless() && romManager.needsScan(info);
+    if (scan && unscanned != null) {
+      unscanned.add(info);
+    }
+    else if (scan) {
+      romManager.scanRom(info);
+      gameScan = romManager.getGameScan(id);
     }
-    else if (!romManager.wasScanned(id) && service.isHeadless()) {
-      rom = romManager.scanRom(info);
+    else if (gameScan != null && !StringUtils.isEmpty(gameScan.getRom())) {
+      romFile = new File(SystemInfo.getInstance().getMameRomFolder(), gameScan.getRom() + ".zip");
     }
 
+    String rom = gameScan != null ? gameScan.getRom() : null;
     info.setRom(rom);
-    info.setOriginalRom(romManager.getOriginalRom(id));
-    info.setNvOffset(romManager.getNVOffset(id));
-    info.setHsFileName(romManager.getHSFileName(id));
+    info.setOriginalRom(romManager.getOriginalRom(rom));
+    info.setNvOffset(gameScan != null ? gameScan.getNvOffset() : -1);
+    info.setHsFileName(gameScan != null ? gameScan.getHsFileName() : null);
     info.setRomFile(romFile);
 
-    loadStats(info);
+    info.setNumberPlays(rs.getInt("StatsNumberPlays"));
+    info.setLastPlayed(rs.getDate("StatsLastPlayed"));
     return info;
   }
 }
@@ -0,0 +1,67 @@
+package de.mephisto.vpin.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often the operations of a {@link SqliteConnectionPool} were blocked by locks of other processes.
+ */
+public class SqliteMetrics {
+  private final AtomicLong operations = new AtomicLong();
+  private final AtomicLong busyErrors = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong busyWaitMillis = new AtomicLong();
+
+  void operation() {
+    operations.incrementAndGet();
+  }
+
+  void busy(long waitMillis) {
+    busyErrors.incrementAndGet();
+    busyWaitMillis.addAndGet(waitMillis);
+  }
+
+  void retry(long backoffMillis) {
+    retries.incrementAndGet();
+    busyWaitMillis.addAndGet(backoffMillis);
+  }
+
+  void failure() {
+    failures.incrementAndGet();
+  }
+
+  public long getOperations() {
+    return operations.get();
+  }
+
+  /**
+   * The number of statements that failed with SQLITE_BUSY or SQLITE_LOCKED after the busy timeout.
+   */
+  public long getBusyErrors() {
+    return busyErrors.get();
+  }
+
+  public long getRetries() {
+    return retries.get();
+  }
+
+  /**
+   * The number of operations that still failed after the last retry.
+   */
+  public long getFailures() {
+    return failures.get();
+  }
+
+  /**
+   * The time spent in busy timeouts and backoff waits.
+   */
+  public long getBusyWaitMillis() {
+    return busyWaitMillis.get();
+  }
+
+  @Override
+  public String toString() {
+    return "operations: " + getOperations() + ", busy: " + getBusyErrors() + ", retries: " + getRetries()
+        + ", failures: " + getFailures() + ", busy wait: " + getBusyWaitMillis() + "ms";
+  }
+}
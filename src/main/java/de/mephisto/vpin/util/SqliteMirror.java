@@ -0,0 +1,177 @@
+package de.mephisto.vpin.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory copy of the PinUP Popper database, created with the SQLite backup API.
+ * Reads from the copy never wait for locks of PinUP Popper and don't touch the disk.
+ * The copy is replaced by a fresh one after the data version of the database has changed,
+ * the data version is checked at most once per check interval.
+ */
+class SqliteMirror {
+  private final static Logger LOG = LoggerFactory.getLogger(SqliteMirror.class);
+
+  private final static AtomicInteger MIRROR_COUNT = new AtomicInteger();
+
+  private final String dbFilePath;
+  private final int size;
+  private final long checkInterval;
+  private final LongSupplier dataVersion;
+
+  private volatile Snapshot snapshot;
+  private volatile long lastCheck = -1;
+  private volatile boolean closed;
+
+  /**
+   * @param size        the number of connections to the copy
+   * @param dataVersion returns the current data version of the database on disk
+   */
+  SqliteMirror(@NonNull String dbFilePath, int size, long checkInterval, @NonNull LongSupplier dataVersion) {
+    this.dbFilePath = dbFilePath;
+    this.size = size;
+    this.checkInterval = checkInterval;
+    this.dataVersion = dataVersion;
+  }
+
+  /**
+   * Returns the connection pool of an up-to-date copy or null if the copy could not be created.
+   */
+  @Nullable
+  SqliteConnectionPool getPool() {
+    long now = System.currentTimeMillis();
+    if (now - lastCheck >= checkInterval) {
+      synchronized (this) {
+        if (now - lastCheck >= checkInterval && !closed) {
+          update(dataVersion.getAsLong());
+          lastCheck = now;
+        }
+      }
+    }
+
+    Snapshot current = snapshot;
+    return current != null ? current.pool : null;
+  }
+
+  /**
+   * Returns the connection pool of a copy that has been created at the given data version or later,
+   * regardless of the check interval. Used by callers that cache the read data under the version.
+   *
+   * @param version the data version the caller has read from the database file before
+   */
+  @Nullable
+  SqliteConnectionPool getPool(long version) {
+    Snapshot current = snapshot;
+    if (current == null || current.version != version) {
+      synchronized (this) {
+        if (!closed) {
+          update(version);
+          lastCheck = System.currentTimeMillis();
+        }
+      }
+      current = snapshot;
+    }
+    return current != null && current.version == version ? current.pool : null;
+  }
+
+  private void update(long version) {
+    Snapshot current = snapshot;
+    if (current == null || current.version != version) {
+      //the copy is created after the version has been read, so it contains at least the changes of that version
+      snapshot = load(version);
+      if (current != null) {
+        current.close();
+      }
+    }
+  }
+
+  /**
+   * Makes the next read check the data version, should be called after the database has been written.
+   */
+  void invalidate() {
+    lastCheck = -1;
+  }
+
+  synchronized void close() {
+    closed = true;
+    if (snapshot != null) {
+      snapshot.close();
+      snapshot = null;
+    }
+  }
+
+  @Nullable
+  private Snapshot load(long version) {
+    long start = System.currentTimeMillis();
+    String url = "jdbc:sqlite:file:popper-mirror-" + MIRROR_COUNT.incrementAndGet() + "?mode=memory&cache=shared";
+    Connection keeper = null;
+    try {
+      //the in-memory database exists as long as a connection to it is open
+      keeper = DriverManager.getConnection(url);
+      try (Statement statement = keeper.createStatement()) {
+        statement.executeUpdate("restore from " + quotePath(dbFilePath));
+      }
+      LOG.info("Created in-memory copy of " + dbFilePath + " in " + (System.currentTimeMillis() - start) + "ms");
+      return new Snapshot(version, keeper, new SqliteConnectionPool(url, size));
+    } catch (SQLException e) {
+      LOG.error("Failed to create in-memory copy of " + dbFilePath + ", reading from disk: " + e.getMessage(), e);
+      if (keeper != null) {
+        try {
+          keeper.close();
+        } catch (SQLException ex) {
+          LOG.error("Error closing in-memory database: " + ex.getMessage());
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * The restore command of the driver takes the path in single or double quotes without any escaping,
+   * so the quote character is chosen that does not occur in the path.
+   */
+  @NonNull
+  static String quotePath(@NonNull String path) throws SQLException {
+    if (!path.contains("'")) {
+      return "'" + path + "'";
+    }
+    if (!path.contains("\"")) {
+      return "\"" + path + "\"";
+    }
+    throw new SQLException("The path " + path + " can't be used for the restore command, it contains both quote characters.");
+  }
+
+  private static class Snapshot {
+    private final long version;
+    private final Connection keeper;
+    private final SqliteConnectionPool pool;
+
+    private Snapshot(long version, Connection keeper, SqliteConnectionPool pool) {
+      this.version = version;
+      this.keeper = keeper;
+      this.pool = pool;
+    }
+
+    /**
+     * Connections that are still in use are closed when they are released,
+     * the memory is freed after the last one has been closed.
+     */
+    private void close() {
+      pool.close();
+      try {
+        keeper.close();
+      } catch (SQLException e) {
+        LOG.error("Error closing in-memory database: " + e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package de.mephisto.vpin.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Connection settings for the PinUP Popper database, which is written by PinUP Popper while we are reading it.
+ * The values can be overwritten in the "env.properties" file.
+ */
+public class SqliteSettings {
+  public final static String BUSY_TIMEOUT = "sqlite.busyTimeout";
+  public final static String MAX_RETRIES = "sqlite.maxRetries";
+  public final static String RETRY_BACKOFF = "sqlite.retryBackoff";
+  public final static String MMAP_SIZE = "sqlite.mmapSize";
+  public final static String CACHE_SIZE = "sqlite.cacheSize";
+  public final static String SHARED_CACHE = "sqlite.sharedCache";
+  public final static String MIRROR = "sqlite.mirror";
+  public final static String MIRROR_CHECK_INTERVAL = "sqlite.mirrorCheckInterval";
+
+  private int busyTimeout = 2000;
+  private int maxRetries = 3;
+  private int retryBackoff = 100;
+  private long mmapSize = 64 * 1024 * 1024;
+  private int cacheSize = -8192;
+  private boolean sharedCache = false;
+  private boolean mirror = false;
+  private long mirrorCheckInterval = 1000;
+
+  @NonNull
+  public static SqliteSettings load(@NonNull PropertiesStore store) {
+    SqliteSettings settings = new SqliteSettings();
+    if (store.containsKey(BUSY_TIMEOUT)) {
+      settings.setBusyTimeout(store.getInt(BUSY_TIMEOUT));
+    }
+    if (store.containsKey(MAX_RETRIES)) {
+      settings.setMaxRetries(store.getInt(MAX_RETRIES));
+    }
+    if (store.containsKey(RETRY_BACKOFF)) {
+      settings.setRetryBackoff(store.getInt(RETRY_BACKOFF));
+    }
+    if (store.containsKey(MMAP_SIZE)) {
+      settings.setMmapSize(Long.parseLong(store.getString(MMAP_SIZE).trim()));
+    }
+    if (store.containsKey(CACHE_SIZE)) {
+      settings.setCacheSize(store.getInt(CACHE_SIZE));
+    }
+    if (store.containsKey(SHARED_CACHE)) {
+      settings.setSharedCache(store.getBoolean(SHARED_CACHE));
+    }
+    if (store.containsKey(MIRROR)) {
+      settings.setMirror(store.getBoolean(MIRROR));
+    }
+    if (store.containsKey(MIRROR_CHECK_INTERVAL)) {
+      settings.setMirrorCheckInterval(store.getInt(MIRROR_CHECK_INTERVAL));
+    }
+    return settings;
+  }
+
+  /**
+   * The time in ms SQLite waits for a lock before a statement fails with SQLITE_BUSY.
+   */
+  public int getBusyTimeout() {
+    return busyTimeout;
+  }
+
+  public void setBusyTimeout(int busyTimeout) {
+    this.busyTimeout = busyTimeout;
+  }
+
+  /**
+   * The number of retries after a statement has failed with SQLITE_BUSY.
+   */
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  public void setMaxRetries(int maxRetries) {
+    this.maxRetries = maxRetries;
+  }
+
+  /**
+   * The wait time in ms before the first retry, it is doubled for every further retry.
+   */
+  public int getRetryBackoff() {
+    return retryBackoff;
+  }
+
+  public void setRetryBackoff(int retryBackoff) {
+    this.retryBackoff = retryBackoff;
+  }
+
+  public long getMmapSize() {
+    return mmapSize;
+  }
+
+  public void setMmapSize(long mmapSize) {
+    this.mmapSize = mmapSize;
+  }
+
+  /**
+   * The page cache size, negative values are KB, positive values pages.
+   */
+  public int getCacheSize() {
+    return cacheSize;
+  }
+
+  public void setCacheSize(int cacheSize) {
+    this.cacheSize = cacheSize;
+  }
+
+  /**
+   * If enabled, the reader connections share one page cache. This is opt-in, since shared cache connections
+   * use table level locks and may fail with SQLITE_LOCKED instead of waiting for the busy timeout.
+   */
+  public boolean isSharedCache() {
+    return sharedCache;
+  }
+
+  public void setSharedCache(boolean sharedCache) {
+    this.sharedCache = sharedCache;
+  }
+
+  /**
+   * If enabled, all reads are served from an in-memory copy of the database, which is replaced when the database has changed.
+   */
+  public boolean isMirror() {
+    return mirror;
+  }
+
+  public void setMirror(boolean mirror) {
+    this.mirror = mirror;
+  }
+
+  /**
+   * The time in ms after which the in-memory copy is checked for changes of the database.
+   */
+  public long getMirrorCheckInterval() {
+    return mirrorCheckInterval;
+  }
+
+  public void setMirrorCheckInterval(long mirrorCheckInterval) {
+    this.mirrorCheckInterval = mirrorCheckInterval;
+  }
+
+  /**
+   * The reader connections are read-only, so they never take a write lock on the database.
+   */
+  @NonNull
+  SQLiteConfig toReadConfig() {
+    SQLiteConfig config = toWriteConfig();
+    config.setReadOnly(true);
+    config.setSharedCache(sharedCache);
+    config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(mmapSize));
+    config.setCacheSize(cacheSize);
+    return config;
+  }
+
+  @NonNull
+  SQLiteConfig toWriteConfig() {
+    SQLiteConfig config = new SQLiteConfig();
+    config.setBusyTimeout(busyTimeout);
+    return config;
+  }
+}
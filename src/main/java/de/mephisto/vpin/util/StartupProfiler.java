@@ -0,0 +1,234 @@
+package de.mephisto.vpin.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records the phases of the service startup with their wall time, CPU time and allocated bytes.
+ * Phases started on the same thread while another phase is open become its children,
+ * phases of other threads can be attached to a parent explicitly.
+ * CPU time and allocated bytes are those of the thread that ran the phase, they are -1 if the JVM can't measure them.
+ */
+public class StartupProfiler {
+  private static StartupProfiler instance;
+
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private final ThreadLocal<Phase> currentPhase = new ThreadLocal<>();
+  private final List<Phase> phases = new CopyOnWriteArrayList<>();
+  private volatile long start = System.nanoTime();
+
+  StartupProfiler() {
+  }
+
+  public static synchronized StartupProfiler getInstance() {
+    if (instance == null) {
+      instance = new StartupProfiler();
+    }
+    return instance;
+  }
+
+  /**
+   * Starts a phase nested into the phase that is open on the current thread.
+   */
+  @NonNull
+  public Phase start(@NonNull String name) {
+    return start(name, currentPhase.get());
+  }
+
+  /**
+   * Starts a phase nested into the given phase, e.g. a phase of the thread that scheduled the work.
+   */
+  @NonNull
+  public Phase start(@NonNull String name, @Nullable Phase parent) {
+    Phase phase = new Phase(name, parent, currentPhase.get());
+    currentPhase.set(phase);
+    phases.add(phase);
+    return phase;
+  }
+
+  /**
+   * Runs the given task as phase nested into the phase that is open on the current thread.
+   */
+  public <E extends Exception> void run(@NonNull String name, @NonNull PhaseTask<E> task) throws E {
+    run(name, currentPhase.get(), task);
+  }
+
+  /**
+   * Runs the given task as phase nested into the given phase.
+   */
+  public <E extends Exception> void run(@NonNull String name, @Nullable Phase parent, @NonNull PhaseTask<E> task) throws E {
+    Phase phase = start(name, parent);
+    try {
+      task.run();
+    } finally {
+      phase.close();
+    }
+  }
+
+  /**
+   * Returns the phase that is open on the current thread.
+   */
+  @Nullable
+  public Phase getCurrentPhase() {
+    return currentPhase.get();
+  }
+
+  /**
+   * All recorded phases in the order they have been started, the open ones included.
+   */
+  @NonNull
+  public List<Phase> getPhases() {
+    return new ArrayList<>(phases);
+  }
+
+  /**
+   * Forgets the recorded phases, used before the service is started again.
+   */
+  public void reset() {
+    phases.clear();
+    start = System.nanoTime();
+  }
+
+  /**
+   * Returns the recorded phases as indented table.
+   */
+  @NonNull
+  public String getTimeline() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format("%8s %8s %8s %10s  %s%n", "start", "wall", "cpu", "alloc", "phase"));
+    for (Phase phase : phases) {
+      builder.append(String.format("%6dms %6s %6s %10s  %s%s [%s]%n",
+          phase.getStartOffsetMs(),
+          phase.isFinished() ? phase.getWallTimeMs() + "ms" : "open",
+          phase.getCpuTimeMs() >= 0 ? phase.getCpuTimeMs() + "ms" : "-",
+          phase.getAllocatedBytes() >= 0 ? phase.getAllocatedBytes() / 1024 + "KB" : "-",
+          "  ".repeat(phase.getDepth()), phase.getName(), phase.getThreadName()));
+    }
+    return builder.toString();
+  }
+
+  private long currentCpuTime() {
+    return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+  }
+
+  private long currentAllocatedBytes() {
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+      if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  public class Phase implements AutoCloseable {
+    private final String name;
+    private final int depth;
+    private final String threadName;
+    private final long threadId;
+    private final Phase previous;
+
+    private final long startNanos = System.nanoTime();
+    private final long startCpu = currentCpuTime();
+    private final long startAllocated = currentAllocatedBytes();
+
+    private volatile long wallTime = -1;
+    private volatile long cpuTime = -1;
+    private volatile long allocatedBytes = -1;
+
+    private Phase(@NonNull String name, @Nullable Phase parent, @Nullable Phase previous) {
+      this.name = name;
+      this.depth = parent != null ? parent.depth + 1 : 0;
+      this.threadName = Thread.currentThread().getName();
+      this.threadId = Thread.currentThread().getId();
+      this.previous = previous;
+    }
+
+    @NonNull
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * The nesting level, 0 for phases without parent.
+     */
+    public int getDepth() {
+      return depth;
+    }
+
+    @NonNull
+    public String getThreadName() {
+      return threadName;
+    }
+
+    /**
+     * The start of the phase relative to the start of the profiler.
+     */
+    public long getStartOffsetMs() {
+      return (startNanos - start) / 1000000;
+    }
+
+    public boolean isFinished() {
+      return wallTime >= 0;
+    }
+
+    /**
+     * @return the wall time or -1 if the phase is still open
+     */
+    public long getWallTimeMs() {
+      return wallTime >= 0 ? wallTime / 1000000 : -1;
+    }
+
+    public long getCpuTimeMs() {
+      return cpuTime >= 0 ? cpuTime / 1000000 : -1;
+    }
+
+    public long getAllocatedBytes() {
+      return allocatedBytes;
+    }
+
+    @Override
+    public void close() {
+      if (isFinished()) {
+        return;
+      }
+
+      //the counters are per thread, they can't be measured if the phase is closed by another thread
+      if (Thread.currentThread().getId() == threadId) {
+        long endCpu = currentCpuTime();
+        long endAllocated = currentAllocatedBytes();
+        if (startCpu >= 0 && endCpu >= 0) {
+          cpuTime = endCpu - startCpu;
+        }
+        if (startAllocated >= 0 && endAllocated >= 0) {
+          allocatedBytes = endAllocated - startAllocated;
+        }
+      }
+      wallTime = System.nanoTime() - startNanos;
+
+      if (currentPhase.get() == this) {
+        if (previous != null) {
+          currentPhase.set(previous);
+        }
+        else {
+          currentPhase.remove();
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Phase '" + name + "' (" + getWallTimeMs() + "ms)";
+    }
+  }
+
+  public interface PhaseTask<E extends Exception> {
+    void run() throws E;
+  }
+}
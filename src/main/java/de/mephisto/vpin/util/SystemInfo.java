@@ -48,9 +48,10 @@ public class SystemInfo {
   }
 
   public void init() throws VPinServiceException {
-    initBaseFolders();
-    initPinemHiFolders();
-    logSystemInfo();
+    StartupProfiler profiler = StartupProfiler.getInstance();
+    profiler.run("base folders", this::initBaseFolders);
+    profiler.run("pinemhi folders", this::initPinemHiFolders);
+    profiler.run("system info log", this::logSystemInfo);
   }
 
   private void initBaseFolders() throws VPinServiceException {
@@ -117,7 +118,9 @@ public class SystemInfo {
     LOG.info(formatPathLog("B2S Extraction Folder", this.getB2SImageExtractionFolder()));
     LOG.info(formatPathLog("VPX Files", String.valueOf(this.getVPXTables().length)));
     if (this.getPinUPDatabaseFile().exists()) {
-      LOG.info(formatPathLog("Database Game Count (VPX)", String.valueOf(new SqliteConnector(this.getPinUPDatabaseFile()).getGameCount())));
+      SqliteConnector connector = new SqliteConnector(this.getPinUPDatabaseFile());
+      LOG.info(formatPathLog("Database Game Count (VPX)", String.valueOf(connector.getGameCount())));
+      connector.close();
     }
     LOG.info("*******************************************************************************************************");
   }
@@ -289,8 +292,10 @@ public class SystemInfo {
   public static SystemInfo getInstance() {
     if (instance == null) {
       try {
-        instance = new SystemInfo();
-        instance.init();
+        StartupProfiler.getInstance().run("system info", () -> {
+          instance = new SystemInfo();
+          instance.init();
+        });
       } catch (VPinServiceException e) {
         System.exit(0);
       }
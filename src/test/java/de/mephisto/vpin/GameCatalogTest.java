@@ -0,0 +1,116 @@
+package de.mephisto.vpin;
+
+import de.mephisto.vpin.util.GameChanges;
+import de.mephisto.vpin.util.PopperTestDatabase;
+import de.mephisto.vpin.util.SqliteConnector;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameCatalogTest {
+
+  @Test
+  public void testLookups() {
+    GameInfo afm = createGame(1, "Attack from Mars", "afm_113b");
+    GameInfo afmMod = createGame(2, "Attack from Mars (Mod)", "afm_113b");
+    GameInfo noRom = createGame(3, "Original Table", null);
+    GameInfo emptyRom = createGame(4, "Other Table", "");
+    GameCatalog catalog = new GameCatalog(Arrays.asList(afm, afmMod, noRom, emptyRom));
+
+    assertSame(afmMod, catalog.getGame(2));
+    assertNull(catalog.getGame(5));
+
+    assertSame(afm, catalog.getGameByFileName("Attack from Mars.vpx"));
+    assertNull(catalog.getGameByFileName("attack from mars.vpx"));
+
+    assertSame(afm, catalog.getGameByName("attack FROM mars"));
+    assertSame(noRom, catalog.getGameByName(" Original Table "));
+    assertNull(catalog.getGameByName("Unknown"));
+
+    assertEquals(Arrays.asList(afm, afmMod), catalog.getGamesByRom("afm_113b"));
+    assertTrue(catalog.getGamesByRom("mm_109c").isEmpty());
+    assertEquals(Arrays.asList(noRom, emptyRom), catalog.getGamesWithEmptyRoms());
+  }
+
+  @Test
+  public void testSnapshots() {
+    GameInfo afm = createGame(1, "Attack from Mars", "afm_113b");
+    GameInfo mm = createGame(2, "Medieval Madness", "mm_109c");
+    GameCatalog catalog = new GameCatalog(Arrays.asList(mm, afm), 7, Collections.singletonMap(1, 42));
+    assertEquals(Arrays.asList(afm, mm), catalog.getGames());
+    assertThrows(UnsupportedOperationException.class, () -> catalog.getGames().clear());
+
+    GameInfo changedAfm = createGame(1, "Attack from Mars", "afm_113");
+    GameInfo tz = createGame(3, "Twilight Zone", "tz_92");
+    GameChanges changes = new GameChanges();
+    changes.getUpdated().add(changedAfm);
+    changes.getUpdated().add(tz);
+    changes.getRemoved().add(2);
+    changes.getRowHashes().put(1, 43);
+    changes.getRowHashes().put(3, 44);
+
+    GameCatalog next = catalog.apply(changes, 8);
+    assertEquals(Arrays.asList(changedAfm, tz), next.getGames());
+    assertEquals(8, next.getVersion());
+    assertEquals(44, next.getRowHashes().get(3));
+    assertSame(changedAfm, next.getGamesByRom("afm_113").get(0));
+    assertTrue(next.getGamesByRom("afm_113b").isEmpty());
+
+    //the old snapshot is untouched
+    assertEquals(Arrays.asList(afm, mm), catalog.getGames());
+    assertSame(afm, catalog.getGame(1));
+
+    GameCatalog withMm = next.withGame(mm);
+    assertEquals(Arrays.asList(changedAfm, mm, tz), withMm.getGames());
+    assertEquals(next.getRowHashes(), withMm.getRowHashes());
+    assertEquals(Arrays.asList(changedAfm, tz), withMm.withoutGameFile("Tables/Medieval Madness.vpx").getGames());
+
+    GameInfo scannedTz = tz.copy();
+    scannedTz.setRom(null);
+    GameInfo scannedAfmMod = createGame(4, "Attack from Mars (Mod)", "afm_113b");
+    GameCatalog scanned = withMm.withGames(Arrays.asList(scannedTz, scannedAfmMod));
+    assertEquals(Arrays.asList(changedAfm, mm, scannedTz), scanned.getGames());
+    assertEquals(Collections.singletonList(scannedTz), scanned.getGamesWithEmptyRoms());
+    assertEquals("tz_92", tz.getRom());
+    assertTrue(withMm.getGamesWithEmptyRoms().isEmpty());
+  }
+
+  @Test
+  public void testFailedReadIsRetried() throws Exception {
+    File file = File.createTempFile("PUPDatabase", ".db");
+    file.deleteOnExit();
+    assertTrue(file.delete());
+
+    SqliteConnector connector = new SqliteConnector(file);
+    GameCatalogManager manager = new GameCatalogManager(null, connector);
+    try {
+      //the database can't be read, no catalog is published, so the next call reads again
+      assertThrows(Exception.class, () -> manager.refresh(false).get());
+      assertTrue(manager.awaitFresh().getGames().isEmpty());
+      assertEquals(-1, manager.awaitFresh().getVersion());
+
+      Files.copy(PopperTestDatabase.create().toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      GameCatalog catalog = manager.awaitFresh();
+      assertEquals(connector.getDataVersion(), catalog.getVersion());
+    } finally {
+      manager.close();
+      connector.close();
+    }
+  }
+
+  private static GameInfo createGame(int id, String name, String rom) {
+    GameInfo game = new GameInfo(null);
+    game.setId(id);
+    game.setGameDisplayName(name);
+    game.setGameFileName("Tables/" + name + ".vpx");
+    game.setGameFile(new File("Tables", name + ".vpx"));
+    game.setRom(rom);
+    return game;
+  }
+}
@@ -0,0 +1,62 @@
+package de.mephisto.vpin;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceBootstrapTest {
+
+  @Test
+  public void testDependencies() throws Exception {
+    List<String> finished = new CopyOnWriteArrayList<>();
+    CountDownLatch bothRunning = new CountDownLatch(2);
+
+    ServiceBootstrap bootstrap = new ServiceBootstrap();
+    //the independent tasks only finish if they run at the same time
+    bootstrap.add("a", () -> {
+      bothRunning.countDown();
+      assertTrue(bothRunning.await(10, TimeUnit.SECONDS));
+      finished.add("a");
+    });
+    bootstrap.add("b", () -> {
+      bothRunning.countDown();
+      assertTrue(bothRunning.await(10, TimeUnit.SECONDS));
+      finished.add("b");
+    });
+    bootstrap.add("c", () -> {
+      assertTrue(finished.contains("a"));
+      assertTrue(finished.contains("b"));
+      finished.add("c");
+    }, "a", "b");
+    bootstrap.await();
+
+    assertEquals(3, finished.size());
+    assertEquals("c", finished.get(2));
+  }
+
+  @Test
+  public void testFailure() {
+    AtomicBoolean dependentRun = new AtomicBoolean();
+    ServiceBootstrap bootstrap = new ServiceBootstrap();
+    bootstrap.add("broken", () -> {
+      throw new IllegalStateException("broken");
+    });
+    bootstrap.add("dependent", () -> dependentRun.set(true), "broken");
+
+    VPinServiceException e = assertThrows(VPinServiceException.class, bootstrap::await);
+    assertTrue(e.getCause() instanceof IllegalStateException);
+    assertFalse(dependentRun.get());
+  }
+
+  @Test
+  public void testUnknownDependency() {
+    ServiceBootstrap bootstrap = new ServiceBootstrap();
+    assertThrows(IllegalArgumentException.class, () -> bootstrap.add("a", () -> {}, "b"));
+  }
+}
@@ -0,0 +1,83 @@
+package de.mephisto.vpin.cfb;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompoundFileTest {
+
+  @Test
+  public void testReadStreams() throws IOException {
+    byte[] large = new byte[10000];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = (byte) i;
+    }
+    byte[] small = "small stream".getBytes(StandardCharsets.UTF_8);
+
+    File file = new CompoundFileTestWriter("GameStg")
+        .addStream("Version", small)
+        .addStream("GameData", large)
+        .write();
+
+    try (CompoundFile compoundFile = new CompoundFile(file)) {
+      DirectoryEntry gameData = compoundFile.getEntry("GameStg/GameData");
+      assertNotNull(gameData);
+      assertTrue(gameData.isStream());
+      assertArrayEquals(large, compoundFile.readStream(gameData));
+
+      DirectoryEntry version = compoundFile.getEntry("gamestg/version");
+      assertNotNull(version);
+      assertArrayEquals(small, compoundFile.readStream(version));
+
+      assertNull(compoundFile.getEntry("GameStg/Missing"));
+      assertEquals(2, compoundFile.getChildren(compoundFile.getEntry("GameStg")).size());
+    }
+  }
+
+  @Test
+  public void testCorruptHeader() throws IOException {
+    File file = new CompoundFileTestWriter("GameStg")
+        .addStream("GameData", new byte[10000])
+        .write();
+    byte[] valid = Files.readAllBytes(file.toPath());
+
+    //FAT sector count, DIFAT sector count, first FAT sector, directory sector and mini sector shift
+    assertCorrupt(file, valid, 0x2C, Integer.MAX_VALUE);
+    assertCorrupt(file, valid, 0x2C, -1);
+    assertCorrupt(file, valid, 0x48, Integer.MAX_VALUE);
+    assertCorrupt(file, valid, 0x4C, -7);
+    assertCorrupt(file, valid, 0x4C, 100000);
+    assertCorrupt(file, valid, 0x30, 100000);
+    byte[] miniShift = valid.clone();
+    ByteBuffer.wrap(miniShift).order(ByteOrder.LITTLE_ENDIAN).putShort(0x20, (short) 40);
+    Files.write(file.toPath(), miniShift);
+    assertThrows(CompoundFileException.class, () -> new CompoundFile(file));
+
+    //truncated after the header
+    Files.write(file.toPath(), Arrays.copyOf(valid, 600));
+    assertThrows(CompoundFileException.class, () -> new CompoundFile(file));
+  }
+
+  private static void assertCorrupt(File file, byte[] valid, int offset, int value) throws IOException {
+    byte[] corrupt = valid.clone();
+    ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+    Files.write(file.toPath(), corrupt);
+    assertThrows(CompoundFileException.class, () -> new CompoundFile(file), "Header offset " + offset);
+  }
+
+  @Test
+  public void testNoCompoundFile() throws IOException {
+    File file = File.createTempFile("plain", ".vpx");
+    file.deleteOnExit();
+    Files.write(file.toPath(), new byte[1024]);
+    assertThrows(CompoundFileException.class, () -> new CompoundFile(file));
+  }
+}
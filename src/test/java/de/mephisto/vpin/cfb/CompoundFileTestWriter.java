@@ -0,0 +1,156 @@
+package de.mephisto.vpin.cfb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a minimal version 3 compound file with a single storage that contains the given streams.
+ */
+public class CompoundFileTestWriter {
+  private final static int SECTOR = 512;
+  private final static int MINI_SECTOR = 64;
+  private final static int CUTOFF = 4096;
+  private final static int FREE = 0xFFFFFFFF;
+  private final static int END_OF_CHAIN = 0xFFFFFFFE;
+  private final static int FAT_SECTOR = 0xFFFFFFFD;
+
+  private final String storageName;
+  private final Map<String, byte[]> streams = new LinkedHashMap<>();
+
+  public CompoundFileTestWriter(String storageName) {
+    this.storageName = storageName;
+  }
+
+  public CompoundFileTestWriter addStream(String name, byte[] data) {
+    streams.put(name, data);
+    return this;
+  }
+
+  public File write() throws IOException {
+    List<byte[]> sectors = new ArrayList<>();
+    List<Integer> fat = new ArrayList<>();
+    sectors.add(new byte[SECTOR]);
+    fat.add(FAT_SECTOR);
+
+    //directory: root, storage and the streams, 4 entries per sector
+    int entries = 2 + streams.size();
+    int directorySectors = (entries + 3) / 4;
+    int firstDirectorySector = sectors.size();
+    ByteBuffer directory = ByteBuffer.allocate(directorySectors * SECTOR).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < directorySectors; i++) {
+      sectors.add(null);
+      fat.add(i == directorySectors - 1 ? END_OF_CHAIN : sectors.size());
+    }
+
+    ByteBuffer miniStream = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    List<Integer> miniFat = new ArrayList<>();
+
+    int id = 2;
+    for (Map.Entry<String, byte[]> stream : streams.entrySet()) {
+      byte[] data = stream.getValue();
+      int start;
+      if (data.length < CUTOFF) {
+        start = miniFat.size();
+        int count = Math.max(1, (data.length + MINI_SECTOR - 1) / MINI_SECTOR);
+        for (int i = 0; i < count; i++) {
+          miniFat.add(i == count - 1 ? END_OF_CHAIN : miniFat.size() + 1);
+        }
+        miniStream.position(start * MINI_SECTOR);
+        miniStream.put(data);
+      }
+      else {
+        start = addChain(sectors, fat, data);
+      }
+      int right = id - 1 < streams.size() ? id + 1 : -1;
+      writeEntry(directory, id, stream.getKey(), DirectoryEntry.TYPE_STREAM, -1, right, -1, start, data.length);
+      id++;
+    }
+
+    int miniStreamStart = END_OF_CHAIN;
+    int miniStreamSize = miniFat.size() * MINI_SECTOR;
+    int miniFatStart = END_OF_CHAIN;
+    if (!miniFat.isEmpty()) {
+      miniStreamStart = addChain(sectors, fat, Arrays.copyOf(miniStream.array(), miniStreamSize));
+      ByteBuffer miniFatBuffer = ByteBuffer.allocate(miniFat.size() * 4).order(ByteOrder.LITTLE_ENDIAN);
+      miniFat.forEach(miniFatBuffer::putInt);
+      miniFatStart = addChain(sectors, fat, miniFatBuffer.array());
+    }
+
+    writeEntry(directory, 0, "Root Entry", DirectoryEntry.TYPE_ROOT, -1, -1, 1, miniStreamStart, miniStreamSize);
+    writeEntry(directory, 1, storageName, DirectoryEntry.TYPE_STORAGE, -1, -1, streams.isEmpty() ? -1 : 2, 0, 0);
+    for (int i = 0; i < directorySectors; i++) {
+      sectors.set(firstDirectorySector + i, Arrays.copyOfRange(directory.array(), i * SECTOR, (i + 1) * SECTOR));
+    }
+
+    if (fat.size() > SECTOR / 4) {
+      throw new IOException("Test file too large for a single FAT sector.");
+    }
+    ByteBuffer fatBuffer = ByteBuffer.allocate(SECTOR).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < SECTOR / 4; i++) {
+      fatBuffer.putInt(i < fat.size() ? fat.get(i) : FREE);
+    }
+    sectors.set(0, fatBuffer.array());
+
+    ByteBuffer header = ByteBuffer.allocate(SECTOR).order(ByteOrder.LITTLE_ENDIAN);
+    header.putLong(0, 0xE11AB1A1E011CFD0L);
+    header.putShort(0x18, (short) 0x3E);
+    header.putShort(0x1A, (short) 3);
+    header.putShort(0x1C, (short) 0xFFFE);
+    header.putShort(0x1E, (short) 9);
+    header.putShort(0x20, (short) 6);
+    header.putInt(0x2C, 1);
+    header.putInt(0x30, firstDirectorySector);
+    header.putInt(0x38, CUTOFF);
+    header.putInt(0x3C, miniFatStart);
+    header.putInt(0x40, miniFat.isEmpty() ? 0 : 1);
+    header.putInt(0x44, END_OF_CHAIN);
+    header.putInt(0x48, 0);
+    for (int i = 0; i < 109; i++) {
+      header.putInt(0x4C + i * 4, i == 0 ? 0 : FREE);
+    }
+
+    File file = File.createTempFile("compound", ".vpx");
+    file.deleteOnExit();
+    ByteBuffer out = ByteBuffer.allocate(SECTOR * (sectors.size() + 1));
+    out.put(header.array());
+    for (byte[] sector : sectors) {
+      out.put(sector);
+    }
+    Files.write(file.toPath(), out.array());
+    return file;
+  }
+
+  private static int addChain(List<byte[]> sectors, List<Integer> fat, byte[] data) {
+    int start = sectors.size();
+    int count = Math.max(1, (data.length + SECTOR - 1) / SECTOR);
+    for (int i = 0; i < count; i++) {
+      sectors.add(Arrays.copyOfRange(data, i * SECTOR, (i + 1) * SECTOR));
+      fat.add(i == count - 1 ? END_OF_CHAIN : sectors.size());
+    }
+    return start;
+  }
+
+  private static void writeEntry(ByteBuffer directory, int id, String name, int type, int left, int right, int child, int start, int size) {
+    int offset = id * 128;
+    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_16LE);
+    for (int i = 0; i < nameBytes.length; i++) {
+      directory.put(offset + i, nameBytes[i]);
+    }
+    directory.putShort(offset + 0x40, (short) (nameBytes.length + 2));
+    directory.put(offset + 0x42, (byte) type);
+    directory.putInt(offset + 0x44, left);
+    directory.putInt(offset + 0x48, right);
+    directory.putInt(offset + 0x4C, child);
+    directory.putInt(offset + 0x74, start);
+    directory.putInt(offset + 0x78, size);
+  }
+}
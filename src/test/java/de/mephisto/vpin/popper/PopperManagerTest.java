@@ -0,0 +1,36 @@
+package de.mephisto.vpin.popper;
+
+import de.mephisto.vpin.util.PopperTestDatabase;
+import de.mephisto.vpin.util.SqliteConnector;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PopperManagerTest {
+
+  @Test
+  public void testConfigCheck() throws Exception {
+    File db = PopperTestDatabase.create();
+    SqliteConnector connector = new SqliteConnector(db);
+    new PopperManager(connector, null);
+
+    PopperScripts scripts = connector.getScripts();
+    assertTrue(scripts.getStartupScript().contains("/service/popperLaunch"));
+    assertTrue(scripts.getLaunchScript("Visual Pinball X").startsWith("START vpx.exe\n"));
+    assertTrue(scripts.getLaunchScript("Visual Pinball X").contains("/service/gameLaunch"));
+    assertTrue(scripts.getExitScript("Visual Pinball X").contains("/service/gameExit"));
+    assertNull(scripts.getLaunchScript("Future Pinball"));
+    assertEquals(1, connector.getWriteMetrics().getOperations());
+
+    //the second check finds everything in place and writes nothing
+    new PopperManager(connector, null);
+    PopperScripts unchanged = connector.getScripts();
+    assertEquals(scripts.getStartupScript(), unchanged.getStartupScript());
+    assertEquals(scripts.getLaunchScript("Visual Pinball X"), unchanged.getLaunchScript("Visual Pinball X"));
+    assertEquals(scripts.getExitScript("Visual Pinball X"), unchanged.getExitScript("Visual Pinball X"));
+    assertEquals(1, connector.getWriteMetrics().getOperations());
+    connector.close();
+  }
+}
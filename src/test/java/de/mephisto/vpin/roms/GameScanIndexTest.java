@@ -0,0 +1,51 @@
+package de.mephisto.vpin.roms;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameScanIndexTest {
+
+  @Test
+  public void testLookup() {
+    GameScanIndex index = new GameScanIndex();
+    assertNull(index.get(1));
+    assertNull(index.get(-1));
+    assertNull(index.get(100000));
+
+    GameScan scan = new GameScan(1);
+    scan.setRom("afm_113b");
+    index.put(scan);
+    assertEquals("afm_113b", index.get(1).getRom());
+    assertSame(index.get(1), index.get(1));
+
+    //the index stores a copy
+    scan.setRom("changed");
+    assertEquals("afm_113b", index.get(1).getRom());
+
+    GameScan update = new GameScan(1);
+    update.setRom("afm_113");
+    index.put(update);
+    assertEquals("afm_113", index.get(1).getRom());
+  }
+
+  @Test
+  public void testGrowth() {
+    GameScanIndex index = new GameScanIndex();
+    List<GameScan> scans = new ArrayList<>();
+    for (int i = 0; i < 2000; i += 3) {
+      scans.add(new GameScan(i));
+    }
+    index.putAll(scans);
+    index.put(new GameScan(5000));
+
+    for (GameScan scan : scans) {
+      assertEquals(scan.getGameId(), index.get(scan.getGameId()).getGameId());
+    }
+    assertNull(index.get(1));
+    assertNotNull(index.get(5000));
+  }
+}
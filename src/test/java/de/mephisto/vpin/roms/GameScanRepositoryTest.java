@@ -0,0 +1,162 @@
+package de.mephisto.vpin.roms;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameScanRepositoryTest {
+
+  @Test
+  public void testUpsert() throws IOException {
+    GameScanRepository repository = new GameScanRepository(createDatabaseFile());
+    assertNull(repository.get(1));
+
+    GameScan scan = new GameScan(1);
+    scan.setRom("afm_113b");
+    scan.setNvOffset(2);
+    repository.save(scan);
+
+    scan.setHsFileName("afm.txt");
+    repository.save(scan);
+
+    GameScan stored = repository.get(1);
+    assertNotNull(stored);
+    assertEquals("afm_113b", stored.getRom());
+    assertEquals(2, stored.getNvOffset());
+    assertEquals("afm.txt", stored.getHsFileName());
+    assertEquals(1, repository.getAll().size());
+    repository.close();
+  }
+
+  @Test
+  public void testRomLookup() throws IOException {
+    GameScanRepository repository = new GameScanRepository(createDatabaseFile());
+    GameScan first = new GameScan(1);
+    first.setRom("tz_94h");
+    GameScan second = new GameScan(2);
+    second.setRom("afm_113b");
+    GameScan third = new GameScan(3);
+    third.setRom("tz_94h");
+    repository.saveAll(Arrays.asList(first, second, third));
+
+    assertEquals(Arrays.asList(1, 3), repository.getGameIdsByRom("tz_94h"));
+    assertEquals(Collections.singletonList(2), repository.getGameIdsByRom("afm_113b"));
+    assertTrue(repository.getGameIdsByRom("mm_109c").isEmpty());
+    repository.close();
+  }
+
+  @Test
+  public void testPersistence() throws IOException {
+    File dbFile = createDatabaseFile();
+    GameScanRepository repository = new GameScanRepository(dbFile);
+    GameScan scan = new GameScan(7);
+    scan.setRom("mm_109c");
+    scan.setFilePath("C:/vPinball/VisualPinball/Tables/Medieval Madness.vpx");
+    scan.setFileSize(1234);
+    scan.setFileModified(5678);
+    scan.setFileDigest("0cc175b9c0f1b6a831c399e269772661");
+    repository.save(scan);
+    repository.close();
+
+    repository = new GameScanRepository(dbFile);
+    GameScan stored = repository.get(7);
+    assertNotNull(stored);
+    assertEquals("mm_109c", stored.getRom());
+    assertEquals(1234, stored.getFileSize());
+    assertEquals(5678, stored.getFileModified());
+    assertEquals("0cc175b9c0f1b6a831c399e269772661", stored.getFileDigest());
+    repository.close();
+  }
+
+  @Test
+  public void testDigestColumnIsAdded() throws Exception {
+    File dbFile = createDatabaseFile();
+    try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath().replaceAll("\\\\", "/"));
+         Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE game_scan (game_id INTEGER PRIMARY KEY, display_name TEXT, rom TEXT, " +
+          "nv_offset INTEGER NOT NULL DEFAULT 0, hs_file_name TEXT, file_path TEXT, file_size INTEGER NOT NULL DEFAULT -1, " +
+          "file_modified INTEGER NOT NULL DEFAULT -1, updated INTEGER NOT NULL)");
+      statement.execute("INSERT INTO game_scan (game_id, rom, updated) VALUES (3, 'tz_94h', 0)");
+    }
+
+    GameScanRepository repository = new GameScanRepository(dbFile);
+    GameScan scan = repository.get(3);
+    assertNotNull(scan);
+    assertNull(scan.getFileDigest());
+
+    scan.setFileDigest("92eb5ffee6ae2fec3ad71c777531578f");
+    repository.save(scan);
+    assertEquals("92eb5ffee6ae2fec3ad71c777531578f", repository.get(3).getFileDigest());
+    repository.close();
+  }
+
+  @Test
+  public void testFileIdentity() throws IOException {
+    File table = File.createTempFile("table", ".vpx");
+    table.deleteOnExit();
+
+    GameScan scan = new GameScan(1);
+    assertFalse(scan.matches(table));
+
+    scan.setFilePath(table.getAbsolutePath().replaceAll("\\\\", "/"));
+    scan.setFileSize(table.length());
+    scan.setFileModified(table.lastModified());
+    assertTrue(scan.matches(table));
+
+    Files.write(table.toPath(), "Const cGameName = \"afm_113b\"\n".getBytes(StandardCharsets.UTF_8));
+    assertFalse(scan.matches(table));
+  }
+
+  @Test
+  public void testMigration() throws IOException {
+    File properties = File.createTempFile("repository", ".properties");
+    properties.deleteOnExit();
+    String content = "gameId.1.displayName=Leprechaun King\n" +
+        "gameId.1.nvOffset=0\n" +
+        "gameId.1.rom=leprechaun\n" +
+        "gameId.10.displayName=Attack from Mars\n" +
+        "gameId.10.nvOffset=2\n" +
+        "gameId.10.rom=afm_113b\n" +
+        "gameId.10.hsFileName=\n" +
+        "gameId.11.rom=\n";
+    Files.write(properties.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+    GameScanRepository repository = new GameScanRepository(createDatabaseFile());
+    repository.migrate(properties);
+
+    assertFalse(properties.exists());
+    File backup = new File(properties.getAbsolutePath() + ".migrated");
+    assertTrue(backup.exists());
+    backup.deleteOnExit();
+
+    assertEquals(3, repository.getAll().size());
+    GameScan scan = repository.get(10);
+    assertNotNull(scan);
+    assertEquals("Attack from Mars", scan.getDisplayName());
+    assertEquals("afm_113b", scan.getRom());
+    assertEquals(2, scan.getNvOffset());
+    assertNull(scan.getHsFileName());
+    assertNull(scan.getFilePath());
+    assertNull(repository.get(11).getRom());
+    repository.close();
+  }
+
+  private static File createDatabaseFile() throws IOException {
+    File file = File.createTempFile("scans", ".db");
+    file.deleteOnExit();
+    if (!file.delete()) {
+      throw new IOException("Failed to delete " + file.getAbsolutePath());
+    }
+    return file;
+  }
+}
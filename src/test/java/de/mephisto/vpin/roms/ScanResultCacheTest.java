@@ -0,0 +1,90 @@
+package de.mephisto.vpin.roms;
+
+import de.mephisto.vpin.GameInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanResultCacheTest {
+
+  @Test
+  public void testCachedResult() throws IOException {
+    GameScanIndex index = new GameScanIndex();
+    ScanResultCache cache = new ScanResultCache(index);
+    GameInfo game = createGame(1, createTable("Const cGameName = \"afm_113b\"\n"));
+    assertNull(cache.getUnchanged(game));
+
+    GameScan scan = createScan(game, "afm_113b");
+    scan.setNvOffset(2);
+    index.put(scan);
+
+    ScanResult cached = cache.getUnchanged(game);
+    assertNotNull(cached);
+    assertEquals("afm_113b", cached.getRom());
+    assertEquals(2, cached.getNvOffset());
+    assertNull(cached.getHsFileName());
+    assertEquals(scan.getFileDigest(), cached.getFileDigest());
+  }
+
+  @Test
+  public void testChangedFile() throws IOException {
+    GameScanIndex index = new GameScanIndex();
+    ScanResultCache cache = new ScanResultCache(index);
+    GameInfo game = createGame(1, createTable("Const cGameName = \"afm_113b\"\n"));
+    index.put(createScan(game, "afm_113b"));
+
+    Files.write(game.getGameFile().toPath(), "Const cGameName = \"afm_113\"\n".getBytes(StandardCharsets.UTF_8));
+    assertNull(cache.getUnchanged(game));
+    assertNull(cache.getByDigest(ScanResultCache.digest(game.getGameFile())));
+  }
+
+  @Test
+  public void testSameContentDifferentFile() throws IOException {
+    GameScanIndex index = new GameScanIndex();
+    ScanResultCache cache = new ScanResultCache(index);
+    GameInfo game = createGame(1, createTable("Const cGameName = \"afm_113b\"\n"));
+    index.put(createScan(game, "afm_113b"));
+
+    GameInfo copy = createGame(2, createTable("Const cGameName = \"afm_113b\"\n"));
+    assertNull(cache.getUnchanged(copy));
+    ScanResult cached = cache.getByDigest(ScanResultCache.digest(copy.getGameFile()));
+    assertNotNull(cached);
+    assertEquals("afm_113b", cached.getRom());
+
+    //a rescan of the first game replaces its digest
+    GameScan rescan = createScan(game, "afm_113");
+    rescan.setFileDigest(null);
+    index.put(rescan);
+    assertNull(cache.getByDigest(ScanResultCache.digest(copy.getGameFile())));
+  }
+
+  private static GameInfo createGame(int id, File table) {
+    GameInfo game = new GameInfo(null);
+    game.setId(id);
+    game.setGameFile(table);
+    return game;
+  }
+
+  private static GameScan createScan(GameInfo game, String rom) {
+    File table = game.getGameFile();
+    GameScan scan = new GameScan(game.getId());
+    scan.setRom(rom);
+    scan.setFilePath(table.getAbsolutePath().replaceAll("\\\\", "/"));
+    scan.setFileSize(table.length());
+    scan.setFileModified(table.lastModified());
+    scan.setFileDigest(ScanResultCache.digest(table));
+    return scan;
+  }
+
+  private static File createTable(String script) throws IOException {
+    File file = File.createTempFile("table", ".vpx");
+    file.deleteOnExit();
+    Files.write(file.toPath(), script.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}
@@ -0,0 +1,225 @@
+package de.mephisto.vpin.roms;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ScriptLineMatcherTest {
+
+  private final static List<String> LINES = Arrays.asList(
+      "Const cGameName = \"afm_113b\"",
+      "Const cGameName=\"mm_109c\"",
+      "  Const cGameName = \"tz_94h\" 'Twilight Zone",
+      "Const cGameName = \" ij_l7 \"",
+      "'Const cGameName = \"afm_113\"",
+      "    'Const cGameName = \"afm_113\"",
+      "Const cGameName = \"bbb109\" ' 'commented later",
+      "cgamename = \"fh_906h\"",
+      "Const RomSet1 = \"mb_10\"  ",
+      "Const GameName = \"Baseball\"",
+      "GameName = \"Baseball\" : cGameName = \"bsb_l2\"",
+      "Const cGameName = \"This value is far too long for a rom name\"",
+      "Const cGameName = \"sc_18\", cOptions = \"x\"",
+      "Dim cGameName : cGameName = \"t2_l8\"",
+      "cGameName \"x\" = \"y\"",
+      "Const cGameName = \"no_second_quote",
+      "Const cGameName",
+      "If cGameName = \"\" Then Exit Sub",
+      "Controller.GameName = cGameName",
+      "  .GameName = cGameName",
+      "Const HSFileName = \"Baseball.txt\"",
+      "  HSFileName=\"EMTable_1970.txt\"",
+      "'HSFileName = \"old.txt\"",
+      "HSFileName = \"" + "x".repeat(200) + "\"",
+      "NVOffset (2)",
+      "  NVOffset(3)  ' set offset",
+      "NVOffset (0)",
+      "NVOffset (-1)",
+      "NVOffset ()",
+      "NVOffset 4",
+      "'NVOffset (5)",
+      "  LoadVPM \"01560000\", \"S11.VBS\", 3.10",
+      "Sub Table1_Init : vpmInit Me : End Sub",
+      "Option Explicit",
+      ""
+  );
+
+  @Test
+  public void testSingleLines() {
+    for (String line : LINES) {
+      ScanResult expected = new ScanResult();
+      try {
+        RegexLineScanner.scan(expected, line);
+      } catch (RuntimeException e) {
+        //the regex scanner aborted the scan on invalid lines, the matcher ignores them
+        expected = new ScanResult();
+      }
+
+      ScanResult actual = new ScanResult();
+      byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+      new ScriptLineMatcher(StandardCharsets.UTF_8).match(bytes, 0, bytes.length, actual);
+
+      assertEquals(expected.getRom(), actual.getRom(), line);
+      assertEquals(expected.getNvOffset(), actual.getNvOffset(), line);
+      assertEquals(expected.getHsFileName(), actual.getHsFileName(), line);
+    }
+  }
+
+  @Test
+  public void testLineOffsets() {
+    byte[] buffer = "garbage\nConst cGameName = \"afm_113b\"\nNVOffset (2)".getBytes(StandardCharsets.UTF_8);
+    ScanResult result = new ScanResult();
+    ScriptLineMatcher matcher = new ScriptLineMatcher(StandardCharsets.UTF_8);
+    matcher.match(buffer, 8, 28, result);
+    matcher.match(buffer, 37, 12, result);
+    assertEquals("afm_113b", result.getRom());
+    assertEquals(2, result.getNvOffset());
+  }
+
+  @Test
+  public void testValueWithoutQuotes() {
+    ScriptLineMatcher matcher = new ScriptLineMatcher(StandardCharsets.UTF_8);
+    byte[] line = "Const cGameName = \"afm_113b\"".getBytes(StandardCharsets.UTF_8);
+    assertEquals("afm_113b", matcher.extractValue(line, line.length, 16, 16));
+    assertNull(matcher.extractValue(line, line.length, 28, 16));
+    assertNull(matcher.extractValue(line, 20, 16, 16));
+
+    byte[] unquoted = "Const cGameName = afm_113b".getBytes(StandardCharsets.UTF_8);
+    assertNull(matcher.extractValue(unquoted, unquoted.length, 16, 16));
+  }
+
+  @Test
+  @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+  public void benchmarkThroughput() {
+    Random random = new Random(42);
+    List<byte[]> lines = new ArrayList<>();
+    long size = 0;
+    while (size < 64 * 1024 * 1024) {
+      byte[] line;
+      if (random.nextInt(10) == 0) {
+        line = LINES.get(random.nextInt(LINES.size())).getBytes(StandardCharsets.UTF_8);
+      }
+      else {
+        line = new byte[random.nextInt(512)];
+        random.nextBytes(line);
+        for (int i = 0; i < line.length; i++) {
+          if (line[i] == '\n') {
+            line[i] = ' ';
+          }
+        }
+      }
+      lines.add(line);
+      size += line.length;
+    }
+
+    long start = System.nanoTime();
+    for (byte[] line : lines) {
+      try {
+        RegexLineScanner.scan(new ScanResult(), new String(line, StandardCharsets.UTF_8));
+      } catch (RuntimeException e) {
+        //ignore
+      }
+    }
+    double regexSeconds = (System.nanoTime() - start) / 1e9;
+
+    ScriptLineMatcher matcher = new ScriptLineMatcher(StandardCharsets.UTF_8);
+    start = System.nanoTime();
+    for (byte[] line : lines) {
+      matcher.match(line, 0, line.length, new ScanResult());
+    }
+    double matcherSeconds = (System.nanoTime() - start) / 1e9;
+
+    double mb = size / (1024d * 1024d);
+    System.out.printf("Regex scanner: %.1f MB/s, ScriptLineMatcher: %.1f MB/s%n", mb / regexSeconds, mb / matcherSeconds);
+  }
+
+  /**
+   * The line evaluation of the VPXFileScanner before the ScriptLineMatcher was introduced.
+   */
+  private static class RegexLineScanner {
+    private final static List<Pattern> PATTERN_LIST = new ArrayList<>();
+
+    static {
+      ScriptLineMatcher.ROM_PATTERNS.forEach(p -> PATTERN_LIST.add(Pattern.compile(".*" + p + ".*=.*\".*\".*")));
+    }
+
+    private static final Pattern HS_FILENAME_PATTERN = Pattern.compile(".*HSFileName.*=.*\".*\".*");
+
+    static void scan(ScanResult result, String line) {
+      lineSearchRom(result, line);
+      lineSearchNvOffset(result, line);
+      lineSearchHsFileName(result, line);
+    }
+
+    private static void lineSearchHsFileName(ScanResult result, String line) {
+      if (result.getHsFileName() != null) {
+        return;
+      }
+
+      if (HS_FILENAME_PATTERN.matcher(line).matches()) {
+        String pattern = "HSFileName";
+        if (line.contains("'") && line.trim().indexOf("'") < line.indexOf(pattern)) {
+          return;
+        }
+
+        line = line.substring(line.indexOf(pattern) + pattern.length() + 1);
+        int start = line.indexOf("\"") + 1;
+        String hsFileName = line.substring(start);
+        int end = hsFileName.indexOf("\"");
+
+        if (end - start < 128) {
+          hsFileName = hsFileName.substring(0, end).trim();
+        }
+
+        result.setHsFileName(hsFileName);
+      }
+    }
+
+    private static void lineSearchNvOffset(ScanResult result, String line) {
+      if (result.getNvOffset() > 0) {
+        return;
+      }
+
+      if (line.trim().startsWith("NVOffset")) {
+        String nvOffsetString = line.substring(line.indexOf("(") + 1, line.lastIndexOf(")"));
+        result.setNvOffset(Integer.parseInt(nvOffsetString));
+      }
+    }
+
+    private static void lineSearchRom(ScanResult result, String line) {
+      if (result.getRom() != null) {
+        return;
+      }
+
+      for (int i = 0; i < PATTERN_LIST.size(); i++) {
+        if (PATTERN_LIST.get(i).matcher(line).matches()) {
+          String pattern = ScriptLineMatcher.ROM_PATTERNS.get(i);
+          if (line.contains("'") && line.trim().indexOf("'") < line.indexOf(pattern)) {
+            return;
+          }
+
+          line = line.substring(line.indexOf(pattern) + pattern.length() + 1);
+          int start = line.indexOf("\"") + 1;
+          String rom = line.substring(start);
+          int end = rom.indexOf("\"");
+
+          if (end - start < 16) {
+            rom = rom.substring(0, end).trim();
+          }
+
+          result.setRom(rom);
+          return;
+        }
+      }
+    }
+  }
+}
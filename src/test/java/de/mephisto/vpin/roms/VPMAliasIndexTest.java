@@ -0,0 +1,61 @@
+package de.mephisto.vpin.roms;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VPMAliasIndexTest {
+
+  @Test
+  public void testLookups() throws IOException {
+    File file = createAliasFile("afm_113,afm_11u,afm_113b\n# comment,line\ntz_94h,tz_92\n");
+    VPMAliasIndex index = new VPMAliasIndex(file);
+
+    assertEquals("afm_113b", index.getOriginalRom("afm_113"));
+    assertEquals("afm_113b", index.getOriginalRom("afm_11u"));
+    assertNull(index.getOriginalRom("afm_113b"));
+    assertNull(index.getOriginalRom(null));
+    assertNull(index.getOriginalRom("comment"));
+
+    assertEquals(Arrays.asList("afm_113", "afm_11u"), index.getAliases("afm_113b"));
+    assertEquals(Arrays.asList("afm_113b", "afm_113", "afm_11u"), index.getFamily("afm_11u"));
+    assertEquals(Arrays.asList("afm_113b", "afm_113", "afm_11u"), index.getFamily("afm_113b"));
+    assertEquals(Arrays.asList("tz_92", "tz_94h"), index.getFamily("tz_94h"));
+    assertEquals(Collections.singletonList("mm_109c"), index.getFamily("mm_109c"));
+  }
+
+  @Test
+  public void testReload() throws IOException {
+    File file = createAliasFile("afm_113,afm_113b\n");
+    VPMAliasIndex index = new VPMAliasIndex(file, 0);
+    assertEquals("afm_113b", index.getOriginalRom("afm_113"));
+
+    Files.write(file.toPath(), "afm_113,afm_11u\n".getBytes(StandardCharsets.UTF_8));
+    assertTrue(file.setLastModified(file.lastModified() + 2000));
+    assertEquals("afm_11u", index.getOriginalRom("afm_113"));
+
+    assertTrue(file.delete());
+    assertNull(index.getOriginalRom("afm_113"));
+  }
+
+  @Test
+  public void testMissingFile() {
+    VPMAliasIndex index = new VPMAliasIndex(new File("not existing/VPMAlias.txt"));
+    assertNull(index.getOriginalRom("afm_113"));
+    assertEquals(Collections.singletonList("afm_113"), index.getFamily("afm_113"));
+  }
+
+  private static File createAliasFile(String content) throws IOException {
+    File file = File.createTempFile("VPMAlias", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}
@@ -0,0 +1,86 @@
+package de.mephisto.vpin.roms;
+
+import de.mephisto.vpin.util.ReverseLineInputStream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Scans a synthetic table with binary payload and the script in front of the last blocks.
+ * Run with "mvn test -Dbenchmark=true [-Dbenchmark.size=256] [-Dbenchmark.tail=16]", sizes in MB.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class VPXFileScannerBenchmarkTest {
+  private final static int MB = 1024 * 1024;
+
+  private static File table;
+
+  @BeforeAll
+  public static void createTable() throws IOException {
+    int size = Integer.getInteger("benchmark.size", 256);
+    int tail = Integer.getInteger("benchmark.tail", 16);
+
+    table = File.createTempFile("benchmark", ".vpx");
+    table.deleteOnExit();
+
+    Random random = new Random(42);
+    byte[] block = new byte[MB];
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(table))) {
+      for (int i = 0; i < size - tail; i++) {
+        random.nextBytes(block);
+        out.write(block);
+      }
+      out.write(("\r\nOption Explicit\r\nConst cGameName = \"bench_l1\"\r\nConst HSFileName = \"bench.txt\"\r\nNVOffset (3)\r\n").getBytes(StandardCharsets.US_ASCII));
+      for (int i = 0; i < tail; i++) {
+        random.nextBytes(block);
+        out.write(block);
+      }
+    }
+    System.out.println("Created synthetic table of " + (table.length() / MB) + " MB, script " + tail + " MB before the end.");
+  }
+
+  @AfterAll
+  public static void deleteTable() {
+    table.delete();
+  }
+
+  @Test
+  public void benchmarkScan() throws IOException {
+    long start = System.currentTimeMillis();
+    String legacyRom = legacyScanRom(table);
+    long legacyDuration = System.currentTimeMillis() - start;
+
+    start = System.currentTimeMillis();
+    ScanResult result = VPXFileScanner.scan(table);
+    long duration = System.currentTimeMillis() - start;
+
+    System.out.println("ReverseLineInputStream: " + legacyDuration + "ms, ReverseLineReader: " + duration + "ms");
+    assertEquals("bench_l1", legacyRom);
+    assertEquals("bench_l1", result.getRom());
+    assertEquals("bench.txt", result.getHsFileName());
+    assertEquals(3, result.getNvOffset());
+  }
+
+  /**
+   * The line iteration of the scanner before the block buffered reader was introduced.
+   */
+  @SuppressWarnings("deprecation")
+  private static String legacyScanRom(File file) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ReverseLineInputStream(file)))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.contains("cGameName")) {
+          return line.substring(line.indexOf('"') + 1, line.lastIndexOf('"'));
+        }
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,73 @@
+package de.mephisto.vpin.roms;
+
+import de.mephisto.vpin.cfb.CompoundFileTestWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class VPXScriptReaderTest {
+
+  private final static String SCRIPT = "Option Explicit\r\n" +
+      "Const cGameName = \"afm_113b\"\r\n" +
+      "Const HSFileName = \"afm.txt\"\r\n" +
+      "Sub Table1_Init\r\n" +
+      "  NVOffset (2)\r\n" +
+      "End Sub\r\n";
+
+  @Test
+  public void testScriptScan() throws IOException {
+    ByteArrayOutputStream gameData = new ByteArrayOutputStream();
+    writeRecord(gameData, "NAME", new byte[12]);
+    writeRecord(gameData, "IMAG", new byte[6000]);
+    writeInt(gameData, 4);
+    gameData.write("CODE".getBytes(StandardCharsets.US_ASCII));
+    byte[] script = SCRIPT.getBytes(StandardCharsets.US_ASCII);
+    writeInt(gameData, script.length);
+    gameData.write(script);
+    writeRecord(gameData, "ENDB", new byte[0]);
+
+    File table = new CompoundFileTestWriter("GameStg")
+        .addStream("Version", new byte[4])
+        .addStream("GameData", gameData.toByteArray())
+        .write();
+
+    assertEquals(SCRIPT, new String(VPXScriptReader.readScript(table), StandardCharsets.US_ASCII));
+
+    ScanResult result = VPXFileScanner.scan(table);
+    assertEquals("afm_113b", result.getRom());
+    assertEquals("afm.txt", result.getHsFileName());
+    assertEquals(2, result.getNvOffset());
+  }
+
+  @Test
+  public void testCorruptTable() throws IOException {
+    File table = new CompoundFileTestWriter("GameStg")
+        .addStream("GameData", SCRIPT.getBytes(StandardCharsets.US_ASCII))
+        .write();
+
+    //an invalid FAT sector count, the complete file is scanned instead
+    byte[] data = Files.readAllBytes(table.toPath());
+    ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).putInt(0x2C, Integer.MAX_VALUE);
+    Files.write(table.toPath(), data);
+
+    assertEquals("afm_113b", VPXFileScanner.scan(table).getRom());
+  }
+
+  private static void writeRecord(ByteArrayOutputStream out, String tag, byte[] data) throws IOException {
+    writeInt(out, data.length + 4);
+    out.write(tag.getBytes(StandardCharsets.US_ASCII));
+    out.write(data);
+  }
+
+  private static void writeInt(ByteArrayOutputStream out, int value) throws IOException {
+    out.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array());
+  }
+}
@@ -0,0 +1,62 @@
+package de.mephisto.vpin.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LazyTest {
+
+  @Test
+  public void testConcurrentGet() throws Exception {
+    AtomicInteger created = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    Lazy<Object> lazy = new Lazy<>("test object", () -> {
+      created.incrementAndGet();
+      return new Object();
+    });
+    assertFalse(lazy.isCreated());
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Object>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(() -> {
+          start.await();
+          return lazy.get();
+        }));
+      }
+      start.countDown();
+
+      Object first = results.get(0).get(10, TimeUnit.SECONDS);
+      for (Future<Object> result : results) {
+        assertSame(first, result.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(1, created.get());
+    assertTrue(lazy.isCreated());
+  }
+
+  @Test
+  public void testFailureIsRetried() {
+    AtomicInteger attempts = new AtomicInteger();
+    Lazy<String> lazy = new Lazy<>("test string", () -> {
+      if (attempts.incrementAndGet() == 1) {
+        throw new IllegalStateException("not available");
+      }
+      return "value";
+    });
+
+    assertThrows(IllegalStateException.class, lazy::get);
+    assertFalse(lazy.isCreated());
+    assertEquals("value", lazy.get());
+    assertEquals(2, attempts.get());
+  }
+}
@@ -0,0 +1,60 @@
+package de.mephisto.vpin.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+
+/**
+ * Creates a PinUP Popper database with the tables and columns used by the {@link SqliteConnector}.
+ */
+public class PopperTestDatabase {
+
+  public static File create() throws IOException, SQLException {
+    File file = File.createTempFile("PUPDatabase", ".db");
+    file.deleteOnExit();
+    try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath().replaceAll("\\\\", "/"));
+         Statement statement = connection.createStatement()) {
+      statement.execute("CREATE TABLE Games (GameID INTEGER PRIMARY KEY, EMUID INTEGER, GameName TEXT, GameFileName TEXT, GameDisplay TEXT, Visible INTEGER DEFAULT 1)");
+      statement.execute("CREATE TABLE GamesStats (GameID INTEGER PRIMARY KEY, NumberPlays INTEGER, LastPlayed DATETIME)");
+      statement.execute("CREATE TABLE Emulators (EMUID INTEGER PRIMARY KEY, EmuName TEXT, LaunchScript TEXT, PostScript TEXT)");
+      statement.execute("CREATE TABLE GlobalSettings (StartupBatch TEXT)");
+      statement.execute("CREATE TABLE PinUPFunctions (uniqueID INTEGER PRIMARY KEY, Descript TEXT, CntrlCodes INTEGER, Active INTEGER)");
+      statement.execute("CREATE TABLE PlayLists (PlayListID INTEGER PRIMARY KEY, PlayName TEXT, Visible INTEGER DEFAULT 1)");
+      statement.execute("CREATE TABLE PlayListDetails (PlayListID INTEGER, GameID INTEGER)");
+
+      statement.execute("INSERT INTO Emulators (EMUID, EmuName, LaunchScript, PostScript) VALUES (1, 'Visual Pinball X', 'START vpx.exe', 'TASKKILL vpx.exe')");
+      statement.execute("INSERT INTO GlobalSettings (StartupBatch) VALUES ('')");
+      statement.execute("INSERT INTO PinUPFunctions (uniqueID, Descript, CntrlCodes, Active) VALUES (1, 'Show Other', 79, 1)");
+    }
+    return file;
+  }
+
+  /**
+   * Adds the given number of VPX games, every second game has play stats.
+   */
+  public static void addGames(File file, int count) throws SQLException {
+    try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath().replaceAll("\\\\", "/"))) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement games = connection.prepareStatement("INSERT INTO Games (GameID, EMUID, GameName, GameFileName, GameDisplay) VALUES (?, 1, ?, ?, ?)");
+           PreparedStatement stats = connection.prepareStatement("INSERT INTO GamesStats (GameID, NumberPlays, LastPlayed) VALUES (?, ?, ?)")) {
+        for (int i = 1; i <= count; i++) {
+          games.setInt(1, i);
+          games.setString(2, "Table " + i);
+          games.setString(3, "Table " + i + ".vpx");
+          games.setString(4, "Table " + i);
+          games.addBatch();
+
+          if (i % 2 == 0) {
+            stats.setInt(1, i);
+            stats.setInt(2, i);
+            stats.setDate(3, new Date(System.currentTimeMillis()));
+            stats.addBatch();
+          }
+        }
+        games.executeBatch();
+        stats.executeBatch();
+      }
+      connection.commit();
+    }
+  }
+}
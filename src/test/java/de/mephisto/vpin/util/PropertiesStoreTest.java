@@ -0,0 +1,74 @@
+package de.mephisto.vpin.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PropertiesStoreTest {
+
+  @Test
+  public void testBatch() throws IOException {
+    File file = createFile();
+    PropertiesStore store = PropertiesStore.create(file);
+
+    store.beginBatch();
+    store.set("a", "1");
+    store.set("b", 2);
+    assertNull(load(file).getProperty("a"));
+
+    store.endBatch();
+    assertEquals("1", load(file).getProperty("a"));
+    assertEquals("2", load(file).getProperty("b"));
+    assertFalse(new File(file.getParentFile(), file.getName() + ".tmp").exists());
+  }
+
+  @Test
+  public void testWriteBehind() throws Exception {
+    File file = createFile();
+    PropertiesStore store = PropertiesStore.create(file).enableWriteBehind(200, 3);
+
+    store.set("a", "1");
+    assertNull(load(file).getProperty("a"));
+    awaitProperty(file, "a");
+
+    store.set("b", "1");
+    store.set("c", "1");
+    store.set("d", "1");
+    assertEquals("1", load(file).getProperty("d"));
+
+    store.set("e", "1");
+    store.flush();
+    assertEquals("1", load(file).getProperty("e"));
+  }
+
+  /**
+   * Waits for the delayed flush, bounded so a broken write-behind fails instead of hanging.
+   */
+  private static void awaitProperty(File file, String key) throws Exception {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (load(file).getProperty(key) == null) {
+      assertTrue(System.currentTimeMillis() < deadline, "Property '" + key + "' has not been written.");
+      Thread.sleep(20);
+    }
+  }
+
+  private static Properties load(File file) throws IOException {
+    Properties properties = new Properties();
+    try (FileInputStream in = new FileInputStream(file)) {
+      properties.load(in);
+    }
+    return properties;
+  }
+
+  private static File createFile() throws IOException {
+    File file = File.createTempFile("store", ".properties");
+    file.delete();
+    file.deleteOnExit();
+    return file;
+  }
+}
@@ -0,0 +1,64 @@
+package de.mephisto.vpin.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReverseLineReaderTest {
+
+  @Test
+  public void testReverseLines() throws IOException {
+    File file = write("first\r\nsecond line\nthird\r\n\nlast");
+    assertEquals(Arrays.asList("last", "", "third", "second line", "first"), readAll(file, 4));
+    assertEquals(Arrays.asList("last", "", "third", "second line", "first"), readAll(file, ReverseLineReader.DEFAULT_BLOCK_SIZE));
+  }
+
+  @Test
+  public void testTrailingLineFeed() throws IOException {
+    File file = write("a\nb\n");
+    assertEquals(Arrays.asList("", "b", "a"), readAll(file, 1));
+  }
+
+  @Test
+  public void testLinesStraddlingBlocks() throws IOException {
+    StringBuilder builder = new StringBuilder();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      String line = "Const cGameName = \"rom" + i + "\" " + "x".repeat(i);
+      builder.append(line).append(i % 2 == 0 ? "\r\n" : "\n");
+      expected.add(0, line);
+    }
+    expected.add(0, "");
+
+    File file = write(builder.toString());
+    for (int blockSize : new int[]{1, 7, 64, 1000}) {
+      assertEquals(expected, readAll(file, blockSize));
+    }
+  }
+
+  private static List<String> readAll(File file, int blockSize) throws IOException {
+    List<String> lines = new ArrayList<>();
+    try (ReverseLineReader reader = new ReverseLineReader(file, blockSize, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+
+  private static File write(String content) throws IOException {
+    File file = File.createTempFile("reverse", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+}
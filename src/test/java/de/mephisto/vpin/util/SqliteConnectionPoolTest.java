@@ -0,0 +1,143 @@
+package de.mephisto.vpin.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqliteConnectionPoolTest {
+
+  @Test
+  public void testConnectionReuse() throws Exception {
+    SqliteConnectionPool pool = new SqliteConnectionPool(createUrl(), 1);
+    Connection first;
+    try (PooledConnection connection = pool.acquire()) {
+      first = connection.getConnection();
+      execute(first, "CREATE TABLE Games (GameID INTEGER PRIMARY KEY)");
+    }
+
+    try (PooledConnection connection = pool.acquire()) {
+      assertSame(first, connection.getConnection());
+    }
+    pool.close();
+  }
+
+  @Test
+  public void testReconnect() throws Exception {
+    SqliteConnectionPool pool = new SqliteConnectionPool(createUrl(), 1);
+    Connection first;
+    try (PooledConnection connection = pool.acquire()) {
+      first = connection.getConnection();
+      connection.invalidate();
+    }
+
+    try (PooledConnection connection = pool.acquire()) {
+      assertNotSame(first, connection.getConnection());
+      assertFalse(connection.getConnection().isClosed());
+      try (Statement statement = connection.getConnection().createStatement(); ResultSet rs = statement.executeQuery("SELECT 1")) {
+        assertTrue(rs.next());
+      }
+    }
+    pool.close();
+  }
+
+  @Test
+  public void testClosedPool() throws Exception {
+    SqliteConnectionPool pool = new SqliteConnectionPool(createUrl(), 2);
+    PooledConnection connection = pool.acquire();
+    pool.close();
+    connection.close();
+    assertThrows(SQLException.class, pool::acquire);
+  }
+
+  @Test
+  public void testReadOnlySettings() throws Exception {
+    String url = createUrl();
+    SqliteSettings settings = new SqliteSettings();
+    settings.setMmapSize(1024 * 1024);
+    settings.setBusyTimeout(1234);
+    SqliteConnectionPool writePool = new SqliteConnectionPool(url, 1, settings.toWriteConfig(), 0, 0);
+    writePool.execute(connection -> {
+      execute(connection.getConnection(), "CREATE TABLE Games (GameID INTEGER PRIMARY KEY)");
+      return null;
+    });
+
+    SqliteConnectionPool readPool = new SqliteConnectionPool(url, 1, settings.toReadConfig(), 0, 0);
+    readPool.execute(connection -> {
+      assertEquals(1024 * 1024, queryInt(connection.getConnection(), "PRAGMA mmap_size"));
+      assertEquals(1234, queryInt(connection.getConnection(), "PRAGMA busy_timeout"));
+      assertThrows(SQLException.class, () -> execute(connection.getConnection(), "INSERT INTO Games (GameID) VALUES (1)"));
+      return null;
+    });
+    readPool.close();
+    writePool.close();
+  }
+
+  @Test
+  public void testBusyRetries() throws Exception {
+    String url = createUrl();
+    SqliteSettings settings = new SqliteSettings();
+    settings.setBusyTimeout(20);
+    settings.setSharedCache(false);
+
+    try (Connection popper = DriverManager.getConnection(url)) {
+      execute(popper, "CREATE TABLE Games (GameID INTEGER PRIMARY KEY)");
+      execute(popper, "BEGIN EXCLUSIVE");
+
+      SqliteConnectionPool pool = new SqliteConnectionPool(url, 1, settings.toReadConfig(), 2, 10);
+      SQLException e = assertThrows(SQLException.class, () -> pool.execute(connection -> queryInt(connection.getConnection(), "SELECT count(*) FROM Games")));
+      assertTrue(SqliteConnectionPool.isBusy(e));
+
+      SqliteMetrics metrics = pool.getMetrics();
+      assertEquals(1, metrics.getOperations());
+      assertEquals(3, metrics.getBusyErrors());
+      assertEquals(2, metrics.getRetries());
+      assertEquals(1, metrics.getFailures());
+      assertTrue(metrics.getBusyWaitMillis() >= 30);
+
+      //the lock is released while the pool waits for the first retry
+      Thread unlock = new Thread(() -> {
+        try {
+          Thread.sleep(10);
+          execute(popper, "COMMIT");
+        } catch (Exception ex) {
+          throw new RuntimeException(ex);
+        }
+      });
+      SqliteConnectionPool retryPool = new SqliteConnectionPool(url, 1, settings.toReadConfig(), 5, 50);
+      unlock.start();
+      assertEquals(0, (int) retryPool.execute(connection -> queryInt(connection.getConnection(), "SELECT count(*) FROM Games")));
+      unlock.join();
+      assertEquals(0, retryPool.getMetrics().getFailures());
+
+      pool.close();
+      retryPool.close();
+    }
+  }
+
+  private static int queryInt(Connection connection, String sql) throws SQLException {
+    try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+      rs.next();
+      return rs.getInt(1);
+    }
+  }
+
+  private static void execute(Connection connection, String sql) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+
+  private static String createUrl() throws IOException {
+    File file = File.createTempFile("pool", ".db");
+    file.deleteOnExit();
+    return "jdbc:sqlite:" + file.getAbsolutePath().replaceAll("\\\\", "/");
+  }
+}
@@ -0,0 +1,93 @@
+package de.mephisto.vpin.util;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.File;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares loading the games with one stats query per game against the joined catalog query on a synthetic database.
+ * Run with "mvn test -Dbenchmark=true [-Dbenchmark.games=5000]".
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class SqliteConnectorBenchmarkTest {
+  private final static int RUNS = 10;
+
+  private static File db;
+  private static int games;
+
+  @BeforeAll
+  public static void createDatabase() throws Exception {
+    games = Integer.getInteger("benchmark.games", 5000);
+    db = PopperTestDatabase.create();
+    PopperTestDatabase.addGames(db, games);
+    System.out.println("Created synthetic Popper database with " + games + " games.");
+  }
+
+  @Test
+  public void benchmarkCatalogLoad() throws Exception {
+    SqliteConnectionPool pool = new SqliteConnectionPool("jdbc:sqlite:" + db.getAbsolutePath().replaceAll("\\\\", "/"), 1);
+    try (PooledConnection connection = pool.acquire()) {
+      //warm up both variants and make sure they return the same stats
+      Map<Integer, Integer> legacy = loadWithStatsQueries(connection);
+      Map<Integer, Integer> joined = loadJoined(connection);
+      assertEquals(games, legacy.size());
+      assertEquals(legacy, joined);
+
+      long start = System.nanoTime();
+      for (int i = 0; i < RUNS; i++) {
+        loadWithStatsQueries(connection);
+      }
+      double legacyDuration = (System.nanoTime() - start) / (double) RUNS / 1000000;
+
+      start = System.nanoTime();
+      for (int i = 0; i < RUNS; i++) {
+        loadJoined(connection);
+      }
+      double joinedDuration = (System.nanoTime() - start) / (double) RUNS / 1000000;
+
+      System.out.println("Catalog load with " + (games + 1) + " queries: " + String.format(Locale.ROOT, "%.1f ms", legacyDuration));
+      System.out.println("Catalog load with 1 query: " + String.format(Locale.ROOT, "%.1f ms", joinedDuration));
+    }
+    pool.close();
+  }
+
+  private static Map<Integer, Integer> loadWithStatsQueries(PooledConnection connection) throws SQLException {
+    Map<Integer, Integer> result = new HashMap<>();
+    PreparedStatement statement = connection.prepare("SELECT * FROM Games WHERE EMUID = 1");
+    try (ResultSet rs = statement.executeQuery()) {
+      while (rs.next()) {
+        int id = rs.getInt("GameID");
+        result.put(id, 0);
+        PreparedStatement stats = connection.prepare("SELECT NumberPlays, LastPlayed FROM GamesStats WHERE GameID = ?");
+        stats.setInt(1, id);
+        try (ResultSet statsRs = stats.executeQuery()) {
+          while (statsRs.next()) {
+            statsRs.getDate("LastPlayed");
+            result.put(id, statsRs.getInt("NumberPlays"));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private static Map<Integer, Integer> loadJoined(PooledConnection connection) throws SQLException {
+    Map<Integer, Integer> result = new HashMap<>();
+    PreparedStatement statement = connection.prepare(SqliteConnector.SELECT_GAMES + " WHERE Games.EMUID = 1");
+    try (ResultSet rs = statement.executeQuery()) {
+      while (rs.next()) {
+        rs.getDate("StatsLastPlayed");
+        result.put(rs.getInt("GameID"), rs.getInt("StatsNumberPlays"));
+      }
+    }
+    return result;
+  }
+}
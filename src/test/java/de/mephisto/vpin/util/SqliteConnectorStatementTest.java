@@ -0,0 +1,221 @@
+package de.mephisto.vpin.util;
+
+import de.mephisto.vpin.GameSummary;
+import de.mephisto.vpin.popper.PinUPControl;
+import de.mephisto.vpin.popper.Playlist;
+import de.mephisto.vpin.popper.Playlists;
+import de.mephisto.vpin.popper.PopperScripts;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqliteConnectorStatementTest {
+
+  @Test
+  public void testScripts() throws Exception {
+    File db = PopperTestDatabase.create();
+    SqliteConnector connector = new SqliteConnector(db);
+
+    assertEquals("START vpx.exe", connector.getEmulatorStartupScript("Visual Pinball X"));
+    assertEquals("TASKKILL vpx.exe", connector.getEmulatorExitScript("Visual Pinball X"));
+    assertNull(connector.getEmulatorStartupScript("Future Pinball"));
+
+    String script = "echo 'it''s a quote' \"and more\"\r\nSTART vpx.exe";
+    connector.updateScript("Visual Pinball X", SqliteConnector.LAUNCH_SCRIPT, script);
+    assertEquals(script, connector.getEmulatorStartupScript("Visual Pinball X"));
+
+    connector.updateScript("Visual Pinball X", "EmuName", "broken");
+    assertEquals("TASKKILL vpx.exe", connector.getEmulatorExitScript("Visual Pinball X"));
+
+    connector.updateStartupScript("curl 'http://localhost'");
+    assertEquals("curl 'http://localhost'", connector.getStartupScript());
+    connector.close();
+  }
+
+  @Test
+  public void testScriptsWithoutGlobalSettings() throws Exception {
+    File db = PopperTestDatabase.create();
+    execute(db, "DELETE FROM GlobalSettings");
+    execute(db, "INSERT INTO Emulators (EMUID, EmuName, LaunchScript, PostScript) VALUES (2, 'Future Pinball', 'START fp.exe', NULL)");
+    SqliteConnector connector = new SqliteConnector(db);
+
+    PopperScripts scripts = connector.getScripts();
+    assertNull(scripts.getStartupScript());
+    assertEquals("START vpx.exe", scripts.getLaunchScript("Visual Pinball X"));
+    assertEquals("TASKKILL vpx.exe", scripts.getExitScript("Visual Pinball X"));
+    assertEquals("START fp.exe", scripts.getLaunchScript("Future Pinball"));
+    assertEquals("", scripts.getExitScript("Future Pinball"));
+    connector.close();
+  }
+
+  @Test
+  public void testFunctions() throws Exception {
+    SqliteConnector connector = new SqliteConnector(PopperTestDatabase.create());
+    PinUPControl function = connector.getFunction("Show Other");
+    assertNotNull(function);
+    assertEquals(79, function.getCtrlKey());
+    assertNull(connector.getFunction("Show' Other"));
+    assertEquals(1, connector.getControls().size());
+    connector.close();
+  }
+
+  @Test
+  public void testPlaylists() throws Exception {
+    File db = PopperTestDatabase.create();
+    execute(db, "INSERT INTO PlayLists (PlayListID, PlayName) VALUES (1, 'Home'), (2, 'Favorites'), (3, 'Empty')");
+    execute(db, "INSERT INTO PlayListDetails (PlayListID, GameID) VALUES (1, 5), (1, 2), (2, 7), (1, 9), (2, 2)");
+
+    SqliteConnector connector = new SqliteConnector(db);
+    Playlists playlists = connector.getPlaylists();
+    assertEquals(3, playlists.getPlaylists().size());
+
+    Playlist home = playlists.getPlaylist(1);
+    assertNotNull(home);
+    assertEquals("Home", home.getName());
+    assertEquals(Arrays.asList(5, 2, 9), home.getGameIds());
+    assertTrue(home.contains(9));
+    assertFalse(home.contains(7));
+    assertTrue(playlists.getPlaylist(3).getGameIds().isEmpty());
+
+    assertTrue(playlists.contains(7));
+    assertFalse(playlists.contains(1));
+    assertFalse(playlists.contains(-1));
+    assertEquals(Arrays.asList(2, 5, 7, 9), connector.getGameIdsFromPlaylists());
+    assertSame(playlists, connector.getPlaylists());
+
+    execute(db, "INSERT INTO PlayListDetails (PlayListID, GameID) VALUES (3, 1)");
+    Playlists updated = connector.getPlaylists();
+    assertTrue(updated.contains(1));
+
+    //a failed read keeps the previous playlists and is not cached
+    execute(db, "ALTER TABLE PlayListDetails RENAME TO Broken");
+    assertSame(updated, connector.getPlaylists());
+    execute(db, "ALTER TABLE Broken RENAME TO PlayListDetails");
+    assertNotSame(updated, connector.getPlaylists());
+    connector.close();
+  }
+
+  @Test
+  public void testDataVersion() throws Exception {
+    File db = PopperTestDatabase.create();
+    SqliteConnector connector = new SqliteConnector(db);
+    long version = connector.getDataVersion();
+    assertEquals(version, connector.getDataVersion());
+
+    execute(db, "INSERT INTO PlayLists (PlayListID, PlayName) VALUES (1, 'Home')");
+    long changed = connector.getDataVersion();
+    assertNotEquals(version, changed);
+    assertEquals(changed, connector.getDataVersion());
+
+    connector.updateStartupScript("START");
+    assertNotEquals(changed, connector.getDataVersion());
+    connector.close();
+  }
+
+  @Test
+  public void testGameSummaries() throws Exception {
+    File db = PopperTestDatabase.create();
+    PopperTestDatabase.addGames(db, 12);
+    execute(db, "INSERT INTO Games (GameID, EMUID, GameFileName, GameDisplay) VALUES (20, 2, 'Other.fpt', 'Other')");
+    execute(db, "INSERT INTO Games (GameID, EMUID, GameFileName, GameDisplay) VALUES (21, 1, 'Sub\\Nested.vpx', 'Nested')");
+    execute(db, "INSERT INTO Games (GameID, EMUID, GameFileName, GameDisplay) VALUES (22, 1, 'Unnamed.vpx', NULL)");
+    execute(db, "INSERT INTO Games (GameID, EMUID, GameFileName, GameDisplay) VALUES (23, 1, 'lower.vpx', 'lower case')");
+
+    SqliteConnector connector = new SqliteConnector(db);
+    List<GameSummary> summaries = connector.getGameSummaries();
+    assertEquals(15, summaries.size());
+
+    //the same order as the game lists
+    List<GameSummary> sorted = new ArrayList<>(summaries);
+    sorted.sort(Comparator.comparing(GameSummary::getGameDisplayName, Comparator.nullsLast(Comparator.naturalOrder())));
+    assertEquals(sorted, summaries);
+    assertEquals("lower case", summaries.get(13).getGameDisplayName());
+    assertNull(summaries.get(14).getGameDisplayName());
+    assertEquals("Nested", summaries.get(0).getGameDisplayName());
+    assertEquals("Nested.vpx", summaries.get(0).getVpxFileName());
+    assertEquals("Table 1", summaries.get(1).getGameDisplayName());
+    assertEquals("Table 10", summaries.get(2).getGameDisplayName());
+
+    GameSummary summary = connector.getGameSummary(5);
+    assertNotNull(summary);
+    assertEquals("Table 5.vpx", summary.getGameFileName());
+    assertEquals(summaries.get(summaries.indexOf(summary)).getGameDisplayName(), summary.getGameDisplayName());
+    assertNull(connector.getGameSummary(20));
+    assertNull(connector.getGameSummary(99));
+    connector.close();
+  }
+
+  @Test
+  public void testAsync() throws Exception {
+    File db = PopperTestDatabase.create();
+    PopperTestDatabase.addGames(db, 5);
+    execute(db, "INSERT INTO PlayLists (PlayListID, PlayName) VALUES (1, 'Home')");
+
+    SqliteConnector connector = new SqliteConnector(db);
+    //thenApply may run on the calling thread if the query has already finished, so the thread is checked inside
+    CompletableFuture<String> thread = connector.supplyAsync(() -> {
+      assertEquals(5, connector.getGameSummaries().size());
+      return Thread.currentThread().getName();
+    });
+    assertTrue(thread.get(10, TimeUnit.SECONDS).startsWith("SQLite Worker"));
+
+    CompletableFuture<List<GameSummary>> summaries = connector.getGameSummariesAsync();
+    CompletableFuture<Playlists> playlists = connector.getPlaylistsAsync();
+    CompletableFuture.allOf(summaries, playlists).get(10, TimeUnit.SECONDS);
+    assertEquals(5, summaries.get().size());
+    assertNotNull(playlists.get().getPlaylist(1));
+
+    connector.close();
+    CompletableFuture<List<GameSummary>> closed = connector.getGameSummariesAsync();
+    assertThrows(ExecutionException.class, () -> closed.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testAsyncQueueFull() throws Exception {
+    SqliteConnector connector = new SqliteConnector(PopperTestDatabase.create());
+    CountDownLatch release = new CountDownLatch(1);
+    List<CompletableFuture<Boolean>> queued = new ArrayList<>();
+    try {
+      //block the workers and fill the queue, the next operation must fail instead of running on this thread
+      for (int i = 0; i < 100; i++) {
+        queued.add(connector.supplyAsync(() -> {
+          try {
+            return release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            return false;
+          }
+        }));
+      }
+      assertTrue(queued.get(queued.size() - 1).isCompletedExceptionally());
+    } finally {
+      release.countDown();
+    }
+
+    for (CompletableFuture<Boolean> future : queued) {
+      if (!future.isCompletedExceptionally()) {
+        assertTrue(future.get(10, TimeUnit.SECONDS));
+      }
+    }
+    connector.close();
+  }
+
+  private static void execute(File db, String sql) throws Exception {
+    try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + db.getAbsolutePath().replaceAll("\\\\", "/"));
+         Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+package de.mephisto.vpin.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqliteMirrorTest {
+
+  @Test
+  public void testMirror() throws Exception {
+    File db = PopperTestDatabase.create();
+    PopperTestDatabase.addGames(db, 10);
+
+    SqliteSettings settings = new SqliteSettings();
+    settings.setMirror(true);
+    settings.setMirrorCheckInterval(0);
+    SqliteConnector connector = new SqliteConnector(db, settings);
+    assertEquals(10, connector.getGameSummaries().size());
+    assertEquals("START vpx.exe", connector.getEmulatorStartupScript("Visual Pinball X"));
+
+    //changes of other processes are visible after the copy has been replaced
+    execute(db, "INSERT INTO Games (GameID, EMUID, GameFileName, GameDisplay) VALUES (11, 1, 'New.vpx', 'New')");
+    assertEquals(11, connector.getGameSummaries().size());
+
+    //and so are our own
+    connector.updateStartupScript("START");
+    assertEquals("START", connector.getStartupScript());
+
+    //no read has touched the database file
+    assertEquals(0, connector.getReadMetrics().getOperations());
+    connector.close();
+  }
+
+  @Test
+  public void testCheckInterval() throws Exception {
+    File db = PopperTestDatabase.create();
+    PopperTestDatabase.addGames(db, 10);
+
+    SqliteSettings settings = new SqliteSettings();
+    settings.setMirror(true);
+    settings.setMirrorCheckInterval(60000);
+    SqliteConnector connector = new SqliteConnector(db, settings);
+    assertEquals(10, connector.getGameSummaries().size());
+
+    execute(db, "DELETE FROM Games WHERE GameID = 1");
+    assertEquals(10, connector.getGameSummaries().size());
+
+    connector.updateStartupScript("START");
+    assertEquals(9, connector.getGameSummaries().size());
+    connector.close();
+  }
+
+  @Test
+  public void testVersionedReads() throws Exception {
+    File db = PopperTestDatabase.create();
+
+    SqliteSettings settings = new SqliteSettings();
+    settings.setMirror(true);
+    settings.setMirrorCheckInterval(60000);
+    SqliteConnector connector = new SqliteConnector(db, settings);
+    assertTrue(connector.getPlaylists().getPlaylists().isEmpty());
+
+    //the playlists are cached under the data version, so they must not be read from the outdated copy
+    execute(db, "INSERT INTO PlayLists (PlayListID, PlayName) VALUES (1, 'Favorites')");
+    assertEquals(1, connector.getPlaylists().getPlaylists().size());
+
+    long version = connector.getDataVersion();
+    execute(db, "INSERT INTO PlayListDetails (PlayListID, GameID) VALUES (1, 5)");
+    assertNotEquals(version, connector.getDataVersion());
+    assertTrue(connector.getPlaylists().contains(5));
+
+    //the other reads still use the copy until the check interval has passed
+    assertEquals(0, connector.getReadMetrics().getOperations());
+    connector.close();
+  }
+
+  @Test
+  public void testQuotedPath() throws Exception {
+    File folder = Files.createTempDirectory("popper's db").toFile();
+    folder.deleteOnExit();
+    File db = new File(folder, "PUPDatabase.db");
+    db.deleteOnExit();
+    Files.copy(PopperTestDatabase.create().toPath(), db.toPath());
+    PopperTestDatabase.addGames(db, 3);
+
+    SqliteSettings settings = new SqliteSettings();
+    settings.setMirror(true);
+    SqliteConnector connector = new SqliteConnector(db, settings);
+    assertEquals(3, connector.getGameSummaries().size());
+    assertEquals(0, connector.getReadMetrics().getOperations());
+    connector.close();
+
+    assertEquals("'C:/vPinball/PUPDatabase.db'", SqliteMirror.quotePath("C:/vPinball/PUPDatabase.db"));
+    assertEquals("\"/tmp/it's/PUPDatabase.db\"", SqliteMirror.quotePath("/tmp/it's/PUPDatabase.db"));
+    assertThrows(SQLException.class, () -> SqliteMirror.quotePath("/tmp/\"it's\"/PUPDatabase.db"));
+  }
+
+  private static void execute(File db, String sql) throws Exception {
+    try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + db.getAbsolutePath().replaceAll("\\\\", "/"));
+         Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    }
+  }
+}
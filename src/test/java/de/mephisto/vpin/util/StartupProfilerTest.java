@@ -0,0 +1,80 @@
+package de.mephisto.vpin.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StartupProfilerTest {
+
+  @Test
+  public void testNestedPhases() throws Exception {
+    StartupProfiler profiler = new StartupProfiler();
+    byte[][] allocated = new byte[16][];
+    try (StartupProfiler.Phase root = profiler.start("root")) {
+      try (StartupProfiler.Phase child = profiler.start("child")) {
+        assertSame(child, profiler.getCurrentPhase());
+        for (int i = 0; i < allocated.length; i++) {
+          allocated[i] = new byte[64 * 1024];
+        }
+        Thread.sleep(20);
+      }
+      assertSame(root, profiler.getCurrentPhase());
+
+      //phases of other threads are attached to the given parent
+      CompletableFuture.runAsync(() -> profiler.start("worker", root).close()).get(10, TimeUnit.SECONDS);
+    }
+    assertNull(profiler.getCurrentPhase());
+
+    List<StartupProfiler.Phase> phases = profiler.getPhases();
+    assertEquals(3, phases.size());
+    assertEquals("root", phases.get(0).getName());
+    assertEquals(0, phases.get(0).getDepth());
+    assertEquals(1, phases.get(1).getDepth());
+    assertEquals(1, phases.get(2).getDepth());
+    assertTrue(phases.stream().allMatch(StartupProfiler.Phase::isFinished));
+
+    StartupProfiler.Phase child = phases.get(1);
+    assertTrue(child.getWallTimeMs() >= 20);
+    assertTrue(phases.get(0).getWallTimeMs() >= child.getWallTimeMs());
+    if (child.getAllocatedBytes() >= 0) {
+      assertTrue(child.getAllocatedBytes() >= allocated.length * 64 * 1024);
+    }
+
+    String timeline = profiler.getTimeline();
+    assertTrue(timeline.contains("root"));
+    assertTrue(timeline.contains("  child"));
+    assertTrue(timeline.contains("  worker"));
+  }
+
+  @Test
+  public void testRun() {
+    StartupProfiler profiler = new StartupProfiler();
+    profiler.run("outer", () -> profiler.run("inner", () -> assertEquals("inner", profiler.getCurrentPhase().getName())));
+    assertThrows(IllegalStateException.class, () -> profiler.run("failing", () -> {
+      throw new IllegalStateException("failed");
+    }));
+    assertNull(profiler.getCurrentPhase());
+
+    List<StartupProfiler.Phase> phases = profiler.getPhases();
+    assertEquals(3, phases.size());
+    assertEquals(1, phases.get(1).getDepth());
+    assertTrue(phases.stream().allMatch(StartupProfiler.Phase::isFinished));
+  }
+
+  @Test
+  public void testReset() {
+    StartupProfiler profiler = new StartupProfiler();
+    StartupProfiler.Phase open = profiler.start("open");
+    assertFalse(open.isFinished());
+    assertEquals(-1, open.getWallTimeMs());
+    assertTrue(profiler.getTimeline().contains("open"));
+    open.close();
+
+    profiler.reset();
+    assertTrue(profiler.getPhases().isEmpty());
+  }
+}